@@ -0,0 +1,77 @@
+package searchengine.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сравнение двух прогонов JMH, сохранённых с -rf json.
+ * Разница считается значимой, только если интервалы score ± error не пересекаются.
+ * <pre>
+ * java -cp target/benchmarks.jar searchengine.benchmark.CompareResults before.json after.json
+ * </pre>
+ */
+public final class CompareResults {
+    private CompareResults() {
+    }
+
+    private record Score(double score, double error, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> candidate = read(new File(args[1]));
+
+        int width = baseline.keySet().stream().mapToInt(String::length).max().orElse(10);
+        System.out.printf("%-" + width + "s %14s %14s %9s%n", "Benchmark", "Baseline", "Candidate", "Change");
+        for (Map.Entry<String, Score> e : baseline.entrySet()) {
+            Score before = e.getValue();
+            Score after = candidate.get(e.getKey());
+            if (after == null) {
+                System.out.printf("%-" + width + "s %14.3f %14s%n", e.getKey(), before.score(), "-");
+                continue;
+            }
+            double change = (after.score() - before.score()) / before.score() * 100;
+            boolean significant = Math.abs(after.score() - before.score()) > before.error() + after.error();
+            System.out.printf("%-" + width + "s %14.3f %14.3f %+8.1f%% %s %s%n",
+                    e.getKey(), before.score(), after.score(), change, before.unit(),
+                    significant ? "" : "(within error)");
+        }
+        for (String key : candidate.keySet()) {
+            if (!baseline.containsKey(key)) {
+                System.out.printf("%-" + width + "s %14s %14.3f%n", key, "-", candidate.get(key).score());
+            }
+        }
+    }
+
+    /** Бенчмарк с параметрами -> score */
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText()
+                    .replace("searchengine.benchmark.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> it = params.fields();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> p = it.next();
+                    key.append(' ').append(p.getKey()).append('=').append(p.getValue().asText());
+                }
+            }
+            JsonNode metric = run.get("primaryMetric");
+            double error = metric.get("scoreError").asDouble();
+            scores.put(key.toString(), new Score(metric.get("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, metric.get("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,38 @@
+package searchengine.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Образцы страниц из src/jmh/resources/corpus
+ */
+final class Corpus {
+    private Corpus() {
+    }
+
+    /** HTML образца как есть */
+    static String load(String name) {
+        String resource = "/corpus/" + name + ".html";
+        try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No corpus " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Образец, повторённый до заданного размера в килобайтах (символах / 1024) */
+    static String load(String name, int kilobytes) {
+        String sample = load(name);
+        int target = kilobytes * 1024;
+        StringBuilder sb = new StringBuilder(target + sample.length());
+        while (sb.length() < target) {
+            sb.append(sample).append('\n');
+        }
+        return sb.toString();
+    }
+}
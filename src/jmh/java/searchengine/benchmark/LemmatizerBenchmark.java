@@ -0,0 +1,58 @@
+package searchengine.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.config.IndexingSettings;
+import searchengine.services.impl.LemmaServiceImpl;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация страницы целиком: разбор на слова, кеш словоформ и морфология.
+ * lemmaCacheSize=16 оставляет по одной словоформе на сегмент кеша, то есть почти каждое
+ * слово идёт в морфологию — так видна цена промаха.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LemmatizerBenchmark {
+    @Param({"ru", "en", "mixed"})
+    private String corpus;
+
+    @Param({"16", "200"})
+    private int pageKb;
+
+    @Param({"200000", "16"})
+    private int lemmaCacheSize;
+
+    private LemmaServiceImpl lemmaService;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        IndexingSettings settings = new IndexingSettings();
+        settings.setLemmaCacheSize(lemmaCacheSize);
+        lemmaService = new LemmaServiceImpl(settings, new SimpleMeterRegistry());
+        text = Corpus.load(corpus, pageKb);
+    }
+
+    @Benchmark
+    public Map<String, Integer> extractLemmas() {
+        return lemmaService.extractLemmas(text);
+    }
+}
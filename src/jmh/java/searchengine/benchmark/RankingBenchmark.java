@@ -0,0 +1,88 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.index.PageScores;
+import searchengine.index.PostingIntersection;
+import searchengine.index.PostingList;
+import searchengine.index.TopPages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по синтетическим спискам страниц: пересечение списков лемм запроса
+ * и отбор лучших offset + limit страниц, как в SearchServiceImpl.
+ * lists — длины списков через двоеточие, страницы выбираются случайно из universe id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RankingBenchmark {
+    private static final int UNIVERSE = 1_000_000;
+
+    @Param({"1000:100000:400000", "100000:100000:100000", "400000:400000"})
+    private String lists;
+
+    @Param({"20", "1000"})
+    private int window;
+
+    private List<PostingList.Snapshot> snapshots;
+    private PageScores intersected;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        snapshots = new ArrayList<>();
+        for (String size : lists.split(":")) {
+            snapshots.add(randomList(random, Integer.parseInt(size)));
+        }
+        intersected = PostingIntersection.intersect(snapshots);
+    }
+
+    @Benchmark
+    public PageScores intersect() {
+        return PostingIntersection.intersect(snapshots);
+    }
+
+    /** Отбор окна из уже найденных страниц */
+    @Benchmark
+    public List<TopPages.Hit<String>> selectTop() {
+        TopPages<String> top = new TopPages<>(window);
+        top.addAll("site", intersected);
+        return top.sorted();
+    }
+
+    /** Весь путь ранжирования одного сайта */
+    @Benchmark
+    public List<TopPages.Hit<String>> intersectAndSelectTop() {
+        TopPages<String> top = new TopPages<>(window);
+        top.addAll("site", PostingIntersection.intersect(snapshots));
+        return top.sorted();
+    }
+
+    private static PostingList.Snapshot randomList(SplittableRandom random, int size) {
+        int[] pageIds = random.ints(0, UNIVERSE).distinct().limit(size).toArray();
+        Arrays.sort(pageIds);
+        float[] ranks = new float[size];
+        for (int i = 0; i < size; i++) {
+            ranks[i] = 1 + random.nextInt(50);
+        }
+        return new PostingList.Snapshot(pageIds, ranks, size);
+    }
+}
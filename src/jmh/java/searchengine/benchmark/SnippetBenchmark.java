@@ -0,0 +1,55 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.services.impl.SnippetGenerator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сниппет по тексту страницы (столбец page.text) для типичного запроса из двух-трёх лемм
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SnippetBenchmark {
+    private static final Map<String, List<String>> QUERIES = Map.of(
+            "ru", List.of("индекс", "страница", "ранжирование"),
+            "en", List.of("index", "page", "rank"),
+            "mixed", List.of("index", "лемма", "snippet"));
+
+    @Param({"ru", "en", "mixed"})
+    private String corpus;
+
+    @Param({"16", "200"})
+    private int pageKb;
+
+    private String text;
+    private List<String> queryWords;
+
+    @Setup
+    public void setUp() {
+        text = Jsoup.parse(Corpus.load(corpus, pageKb)).text();
+        queryWords = QUERIES.get(corpus);
+    }
+
+    @Benchmark
+    public String generateSnippet() {
+        return SnippetGenerator.generate(text, queryWords, 150);
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.services.impl.WordTokenizer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Только разбор страницы на слова, без лемматизации
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TokenizerBenchmark {
+    @Param({"ru", "en", "mixed"})
+    private String corpus;
+
+    @Param({"16", "200"})
+    private int pageKb;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.load(corpus, pageKb);
+    }
+
+    @Benchmark
+    public void charSequence(Blackhole bh) {
+        WordTokenizer.tokenize(text, (buf, length, cyrillic) -> bh.consume(length));
+    }
+
+    @Benchmark
+    public void reader(Blackhole bh) throws IOException {
+        WordTokenizer.tokenize(new StringReader(text), (buf, length, cyrillic) -> bh.consume(length));
+    }
+}
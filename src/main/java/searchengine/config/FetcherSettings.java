@@ -0,0 +1,26 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Параметры HTTP-клиента краулера (секция fetcher-settings в application.yaml)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "fetcher-settings")
+public class FetcherSettings {
+    /** Значение заголовка User-Agent; под этим же именем читаются правила robots.txt */
+    private String userAgent = "SearchEngineBot";
+    /** Таймаут установки соединения, мс */
+    private int connectTimeoutMs = 5000;
+    /** Таймаут ответа на запрос (до получения тела целиком), мс */
+    private int requestTimeoutMs = 10000;
+    /** Сколько запросов одновременно может быть в полёте на все сайты */
+    private int maxInFlight = 64;
+    /** Ответы больше этого размера (после распаковки) отбрасываются, байт */
+    private int maxBodyBytes = 10 * 1024 * 1024;
+}
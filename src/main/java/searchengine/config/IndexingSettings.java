@@ -0,0 +1,68 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры процесса индексации (секция indexing-settings в application.yaml,
+ * список сайтов читается отдельно в {@link SitesList}).
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings")
+public class IndexingSettings {
+    /** Максимальное число сайтов, индексируемых одновременно */
+    private int maxParallelSites = 4;
+    /** Раз во сколько страниц накопленные частоты лемм сайта записываются в БД */
+    private int lemmaFlushPages = 50;
+    /** Размер JDBC batch при записи строк index */
+    private int jdbcBatchSize = 500;
+    /**
+     * Полная переиндексация через COPY: строки копятся в памяти и загружаются пачками,
+     * частоты лемм пересчитываются в конце сайта. Индексация отдельных страниц идёт обычным путём.
+     */
+    private boolean bulkLoad = false;
+    /** Сколько строк (page + lemma + index) копится перед очередным COPY */
+    private int bulkFlushRows = 50000;
+    /**
+     * Повторная индексация уже проиндексированного сайта без удаления данных: условные GET,
+     * переиндексация только изменившихся страниц, удаление пропавших. Первая индексация сайта — всегда полная.
+     */
+    private boolean incremental = false;
+    /**
+     * Сохранять границу обхода в БД (frontier_url) и продолжать прерванную индексацию сайта
+     * с места остановки вместо полной переиндексации. Не сочетается с bulkLoad.
+     */
+    private boolean resumable = false;
+    /** Сколько изменений границы обхода копится перед записью в БД */
+    private int frontierFlushUrls = 500;
+    /**
+     * Параметры запроса, которые отбрасываются при нормализации ссылок (метки кампаний, id сессий);
+     * "*" в конце — любой параметр с таким префиксом
+     */
+    private List<String> stripQueryParams = new ArrayList<>(List.of(
+            "utm_*", "fbclid", "gclid", "yclid", "_openstat", "sessionid", "phpsessid", "jsessionid", "sid"));
+    /** Сортировать оставшиеся параметры запроса (?b=1&a=2 и ?a=2&b=1 — одна страница) */
+    private boolean sortQueryParams = true;
+    /** Считать /path/ и /path одной страницей */
+    private boolean stripTrailingSlash = true;
+    /**
+     * Страница не индексируется, если SimHash её лемм отличается от уже проиндексированной страницы сайта
+     * не больше чем в стольких битах (из 64); -1 — проверка выключена
+     */
+    private int nearDuplicateDistance = 3;
+    /** Сколько разобранных словоформ держать в кеше лемматизатора */
+    private int lemmaCacheSize = 200_000;
+    /** Хранить HTML страниц в сжатом архиве на диске, а не в столбце page.content */
+    private boolean archivePages = true;
+    /** Каталог архива HTML страниц */
+    private String archiveDir = "page-archive";
+    /** Размер файла архива, после которого начинается следующий (не больше 2 ГБ — файлы отображаются в память) */
+    private int archiveFileMaxBytes = 1 << 30;
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Параметры поиска (секция search-settings в application.yaml)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    /** Искать по инвертированному индексу (сегменты + память); при false поиск всегда идёт по таблице index */
+    private boolean inMemoryIndex = true;
+    /** Каталог файлов сегментов */
+    private String indexDir = "index-data";
+    /** Сколько записей (лемма, страница) сайта держать в куче до сброса в сегмент */
+    private long segmentFlushPostings = 1_000_000;
+    /** Больше сегментов у сайта — запускается фоновое слияние */
+    private int maxSegmentsPerSite = 4;
+    /** Доля удалённых страниц в сегментах сайта, при которой они сливаются, не дожидаясь maxSegmentsPerSite */
+    private double mergeDeletedRatio = 0.1;
+    /** Предельный объём кеша ответов поиска в байтах (оценка); 0 — кеш выключен */
+    private long resultCacheMaxBytes = 64L * 1024 * 1024;
+    /** Потоков для параллельного поиска по сайтам (каждый сайт — отдельный шард) */
+    private int shardThreads = 6;
+    /** Сколько запросов к шардам может ждать свободного потока; сверх этого шард считается не ответившим */
+    private int shardQueueCapacity = 64;
+    /** Сколько ждать ответа шардов, мс; не успевшие сайты в выдачу не попадают */
+    private long shardTimeoutMs = 3000;
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.context.annotation.Configuration;
+import searchengine.services.impl.VisitedSet;
 
 @Setter
 @Getter
@@ -14,4 +15,14 @@ import org.springframework.context.annotation.Configuration;
 public class SiteConfig {
     private String url;
     private String name;
+    /** Число потоков, одновременно загружающих страницы сайта */
+    private int crawlThreads = 4;
+    /** Минимальная пауза между запросами к одному хосту, мс */
+    private long politenessDelayMs = 200;
+    /** Как хранить встреченные URL: EXACT, FINGERPRINT или BLOOM (см. {@link VisitedSet}) */
+    private VisitedSet.Type visitedSet = VisitedSet.Type.FINGERPRINT;
+    /** Ожидаемое число URL сайта: начальный размер множества встреченных URL */
+    private int visitedExpectedUrls = 100_000;
+    /** Доля ложных срабатываний для visitedSet = BLOOM */
+    private double visitedFalsePositiveRate = 0.001;
 }
@@ -59,7 +59,18 @@ public class ApiController {
 
         // Запускаем индексацию
         log.info("Запуск полной индексации сайтов по HTTP-запросу");
-        indexingService.startIndexing();
+        try {
+            indexingService.startIndexing();
+        } catch (IllegalStateException ex) {
+            // потоки остановленного запуска ещё работают
+            log.warn("Индексация не запущена: {}", ex.getMessage());
+            Map<String,Object> error = new HashMap<>();
+            error.put("result", false);
+            error.put("error", ex.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(error);
+        }
 
         // Возвращаем успешный ответ
         Map<String,Object> success = new HashMap<>();
@@ -135,6 +146,16 @@ public class ApiController {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    /**
+     * Точный пересчёт счётчиков страниц и лемм по таблицам page и lemma.
+     * Обычно не нужен: счётчики ведутся при индексации.
+     */
+    @PostMapping("/statistics/recount")
+    public ResponseEntity<StatisticsResponse> recountStatistics() {
+        log.info("Пересчёт статистики по HTTP-запросу");
+        return ResponseEntity.ok(statisticsService.recount());
+    }
+
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam(name = "query", required = false) String query,
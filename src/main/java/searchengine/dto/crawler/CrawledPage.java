@@ -0,0 +1,24 @@
+package searchengine.dto.crawler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.jsoup.nodes.Document;
+
+/**
+ * Загруженная краулером страница: всё, что нужно для индексации без повторного запроса
+ */
+@Data
+@AllArgsConstructor
+public class CrawledPage {
+    private String url;         // абсолютный URL страницы
+    private int statusCode;     // HTTP-код ответа
+    private String body;        // HTML как пришёл с сервера
+    private Document document;  // разобранный body; при 304 — null, пока его не подставит индексатор
+    private String etag;        // заголовок ETag ответа
+    private String lastModified; // заголовок Last-Modified ответа
+
+    /** Сервер ответил 304 на условный запрос: страница не менялась, тела нет */
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.crawler;
+
+import searchengine.util.StringHash;
+
+/**
+ * URL в очереди обхода и его глубина — число переходов по ссылкам от главной страницы
+ */
+public record FrontierEntry(String url, int depth) {
+
+    /** 64-битный отпечаток URL */
+    public static long fingerprint(String url) {
+        return StringHash.hash64(url);
+    }
+}
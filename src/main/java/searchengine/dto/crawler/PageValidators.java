@@ -0,0 +1,8 @@
+package searchengine.dto.crawler;
+
+/**
+ * Заголовки прошлого ответа для условного GET: ETag уходит в If-None-Match,
+ * Last-Modified — в If-Modified-Since. Любой из них может быть null.
+ */
+public record PageValidators(String etag, String lastModified) {
+}
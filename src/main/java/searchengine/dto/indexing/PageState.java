@@ -0,0 +1,12 @@
+package searchengine.dto.indexing;
+
+/**
+ * Что известно о странице с прошлой индексации (проекция page без content и text)
+ */
+public interface PageState {
+    Integer getId();
+    String getPath();
+    String getEtag();
+    String getLastModified();
+    String getContentHash();
+}
@@ -0,0 +1,10 @@
+package searchengine.dto.search;
+
+/**
+ * Страница и её абсолютная релевантность (сумма rank лемм запроса) — проекция нативного запроса
+ */
+public interface PageRelevance {
+    Integer getPageId();
+
+    Double getRelevance();
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+/**
+ * Поля страницы, нужные для выдачи, без HTML (проекция Spring Data)
+ */
+public interface PageSummary {
+    Integer getId();
+
+    String getPath();
+
+    String getTitle();
+
+    String getText();
+}
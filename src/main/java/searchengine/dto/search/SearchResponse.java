@@ -1,5 +1,6 @@
 package searchengine.dto.search;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
@@ -10,4 +11,6 @@ public class SearchResponse {
     private String error;       // если result=false
     private Integer count;      // общее число найденных страниц
     private List<SearchResultItem> data;  // собственно «страницы» выдачи
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> unavailableSites;  // сайты, не ответившие вовремя: выдача неполная
 }
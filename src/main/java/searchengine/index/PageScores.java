@@ -0,0 +1,18 @@
+package searchengine.index;
+
+/**
+ * Страницы, найденные по запросу, и их абсолютная релевантность (сумма rank лемм запроса).
+ * Массивы валидны в пределах [0, size), id страниц идут по возрастанию.
+ */
+public record PageScores(int[] pageIds, float[] scores, int size) {
+    public static final PageScores EMPTY = new PageScores(new int[0], new float[0], 0);
+
+    /** Максимальная абсолютная релевантность среди найденных страниц */
+    public float maxScore() {
+        float max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, scores[i]);
+        }
+        return max;
+    }
+}
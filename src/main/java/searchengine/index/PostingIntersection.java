@@ -0,0 +1,65 @@
+package searchengine.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Пересечение списков страниц на примитивных массивах
+ */
+public final class PostingIntersection {
+    private PostingIntersection() {
+    }
+
+    /**
+     * Находит страницы, которые есть во всех списках, и суммирует их rank.
+     * Обход начинается с самого короткого списка, в остальных позиция ищется
+     * галопирующим поиском, поэтому длинные списки почти не просматриваются.
+     */
+    public static PageScores intersect(List<PostingList.Snapshot> lists) {
+        if (lists.isEmpty()) {
+            return PageScores.EMPTY;
+        }
+        PostingList.Snapshot[] sorted = lists.toArray(new PostingList.Snapshot[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(PostingList.Snapshot::size));
+
+        PostingList.Snapshot first = sorted[0];
+        int[] pageIds = Arrays.copyOf(first.pageIds(), first.size());
+        float[] scores = Arrays.copyOf(first.ranks(), first.size());
+        int size = first.size();
+
+        for (int l = 1; l < sorted.length && size > 0; l++) {
+            PostingList.Snapshot other = sorted[l];
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < size; i++) {
+                int pos = gallop(other.pageIds(), from, other.size(), pageIds[i]);
+                if (pos >= other.size()) {
+                    break;
+                }
+                from = pos;
+                if (other.pageIds()[pos] == pageIds[i]) {
+                    pageIds[kept] = pageIds[i];
+                    scores[kept] = scores[i] + other.ranks()[pos];
+                    kept++;
+                    from = pos + 1;
+                }
+            }
+            size = kept;
+        }
+        return new PageScores(pageIds, scores, size);
+    }
+
+    /** Первая позиция в [from, to), где значение >= key; to, если такой нет */
+    private static int gallop(int[] values, int from, int to, int key) {
+        int step = 1;
+        int hi = from;
+        while (hi < to && values[hi] < key) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int pos = Arrays.binarySearch(values, from, Math.min(hi + 1, to), key);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
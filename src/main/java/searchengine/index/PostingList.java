@@ -0,0 +1,90 @@
+package searchengine.index;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы: отсортированные id страниц и параллельный массив rank.
+ * Запись идёт под блокировкой, чтение — без неё через неизменяемый снимок:
+ * элементы в пределах size снимка никогда не меняются, новые страницы в конец
+ * дописываются за его границей, остальные изменения делаются на копии массивов.
+ */
+public class PostingList {
+    public static final Snapshot EMPTY = new Snapshot(new int[0], new float[0], 0);
+
+    private final int siteId;
+    private volatile Snapshot snapshot = EMPTY;
+
+    public PostingList(int siteId) {
+        this.siteId = siteId;
+    }
+
+    /** Данные списка на момент вызова; pageIds и ranks валидны в пределах [0, size) */
+    public record Snapshot(int[] pageIds, float[] ranks, int size) {
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Добавляет страницу (или обновляет её rank, если она уже есть)
+     */
+    public synchronized void add(int pageId, float rank) {
+        Snapshot s = snapshot;
+        int pos = Arrays.binarySearch(s.pageIds(), 0, s.size(), pageId);
+        if (pos >= 0) {
+            if (s.ranks()[pos] != rank) {
+                float[] ranks = Arrays.copyOf(s.ranks(), s.ranks().length);
+                ranks[pos] = rank;
+                snapshot = new Snapshot(s.pageIds(), ranks, s.size());
+            }
+            return;
+        }
+        int insertAt = -pos - 1;
+        if (insertAt == s.size() && s.size() < s.pageIds().length) {
+            // частый случай: id страниц растут, дописываем за границей текущего снимка
+            s.pageIds()[insertAt] = pageId;
+            s.ranks()[insertAt] = rank;
+            snapshot = new Snapshot(s.pageIds(), s.ranks(), s.size() + 1);
+            return;
+        }
+        int capacity = s.size() < s.pageIds().length ? s.pageIds().length : Math.max(4, s.size() * 2);
+        int[] pageIds = new int[capacity];
+        float[] ranks = new float[capacity];
+        System.arraycopy(s.pageIds(), 0, pageIds, 0, insertAt);
+        System.arraycopy(s.ranks(), 0, ranks, 0, insertAt);
+        pageIds[insertAt] = pageId;
+        ranks[insertAt] = rank;
+        System.arraycopy(s.pageIds(), insertAt, pageIds, insertAt + 1, s.size() - insertAt);
+        System.arraycopy(s.ranks(), insertAt, ranks, insertAt + 1, s.size() - insertAt);
+        snapshot = new Snapshot(pageIds, ranks, s.size() + 1);
+    }
+
+    /**
+     * Убирает страницу из списка
+     * @return true, если страница была в списке
+     */
+    public synchronized boolean remove(int pageId) {
+        Snapshot s = snapshot;
+        int pos = Arrays.binarySearch(s.pageIds(), 0, s.size(), pageId);
+        if (pos < 0) {
+            return false;
+        }
+        int[] pageIds = new int[s.pageIds().length];
+        float[] ranks = new float[s.ranks().length];
+        System.arraycopy(s.pageIds(), 0, pageIds, 0, pos);
+        System.arraycopy(s.ranks(), 0, ranks, 0, pos);
+        System.arraycopy(s.pageIds(), pos + 1, pageIds, pos, s.size() - pos - 1);
+        System.arraycopy(s.ranks(), pos + 1, ranks, pos, s.size() - pos - 1);
+        snapshot = new Snapshot(pageIds, ranks, s.size() - 1);
+        return true;
+    }
+}
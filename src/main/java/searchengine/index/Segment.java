@@ -0,0 +1,172 @@
+package searchengine.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Неизменяемый сегмент индекса одного сайта, отображённый в память через FileChannel.map.
+ * Файл отображается кусками по 1 ГБ (один MappedByteBuffer ограничен 2 ГБ), смещения — long.
+ * Данные читаются абсолютными get, поэтому сегментом можно пользоваться из разных потоков.
+ *
+ * Формат файла:
+ * <pre>
+ * postings: для каждой леммы — id страниц (varint разностей) и rank (float) каждой страницы
+ * pages:    id всех страниц сегмента (varint разностей)
+ * dict:     по возрастанию id леммы — lemmaId int, count int, offset long
+ * footer:   dictOffset long, pagesOffset long, lemmaCount int, pageCount int, siteId int, version int, magic int
+ * </pre>
+ */
+public final class Segment {
+    static final int MAGIC = 0x53454731; // "SEG1"
+    static final int VERSION = 1;
+    static final int DICT_ENTRY_BYTES = 16;
+    static final int FOOTER_BYTES = 36;
+    static final int CHUNK_BITS = 30;
+
+    private final Path path;
+    private final MappedByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final int siteId;
+    private final int lemmaCount;
+    private final int pageCount;
+    private final long dictOffset;
+    private final long pagesOffset;
+
+    private Segment(Path path, MappedByteBuffer[] chunks, int chunkBits, long size) throws IOException {
+        this.path = path;
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        long footer = size - FOOTER_BYTES;
+        if (footer < 0 || getInt(footer + 32) != MAGIC || getInt(footer + 28) != VERSION) {
+            throw new IOException("Not a segment file or unsupported version: " + path);
+        }
+        this.dictOffset = getLong(footer);
+        this.pagesOffset = getLong(footer + 8);
+        this.lemmaCount = getInt(footer + 16);
+        this.pageCount = getInt(footer + 20);
+        this.siteId = getInt(footer + 24);
+    }
+
+    public static Segment open(Path path) throws IOException {
+        return open(path, CHUNK_BITS);
+    }
+
+    /** Открывает сегмент кусками по 2^chunkBits байт (маленькие куски нужны тестам стыков) */
+    static Segment open(Path path, int chunkBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = 1L << chunkBits;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) >>> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long from = (long) i << chunkBits;
+                // отображение остаётся действительным и после закрытия канала
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size - from, chunkSize));
+            }
+            return new Segment(path, chunks, chunkBits, size);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public int lemmaCount() {
+        return lemmaCount;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /** id леммы по её номеру в словаре (для последовательного обхода при слиянии) */
+    public int lemmaIdAt(int index) {
+        return getInt(dictOffset + (long) index * DICT_ENTRY_BYTES);
+    }
+
+    /** Список страниц леммы по её номеру в словаре */
+    public PostingList.Snapshot postingsAt(int index) {
+        long entry = dictOffset + (long) index * DICT_ENTRY_BYTES;
+        int count = getInt(entry + 4);
+        long offset = getLong(entry + 8);
+        int[] pageIds = new int[count];
+        long pos = decodeDeltas(offset, pageIds, count);
+        float[] ranks = new float[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = Float.intBitsToFloat(getInt(pos + 4L * i));
+        }
+        return new PostingList.Snapshot(pageIds, ranks, count);
+    }
+
+    /**
+     * Список страниц леммы; пустой снимок, если леммы в сегменте нет
+     */
+    public PostingList.Snapshot postings(int lemmaId) {
+        int lo = 0;
+        int hi = lemmaCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = lemmaIdAt(mid);
+            if (id < lemmaId) {
+                lo = mid + 1;
+            } else if (id > lemmaId) {
+                hi = mid - 1;
+            } else {
+                return postingsAt(mid);
+            }
+        }
+        return PostingList.EMPTY;
+    }
+
+    /** Отсортированные id всех страниц сегмента */
+    public int[] pageIds() {
+        int[] pageIds = new int[pageCount];
+        decodeDeltas(pagesOffset, pageIds, pageCount);
+        return pageIds;
+    }
+
+    /** Читает count varint-разностей начиная с pos; возвращает позицию за последним байтом */
+    private long decodeDeltas(long pos, int[] target, int count) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = getByte(pos++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += value;
+            target[i] = previous;
+        }
+        return pos;
+    }
+
+    private byte getByte(long pos) {
+        return chunks[(int) (pos >>> chunkBits)].get((int) (pos & chunkMask));
+    }
+
+    /** int в порядке big-endian (как пишет DataOutputStream); значение может лежать на стыке кусков */
+    private int getInt(long pos) {
+        MappedByteBuffer chunk = chunks[(int) (pos >>> chunkBits)];
+        int offset = (int) (pos & chunkMask);
+        if (offset + 4 <= chunk.limit()) {
+            return chunk.getInt(offset);
+        }
+        return (getByte(pos) & 0xFF) << 24 | (getByte(pos + 1) & 0xFF) << 16
+                | (getByte(pos + 2) & 0xFF) << 8 | (getByte(pos + 3) & 0xFF);
+    }
+
+    private long getLong(long pos) {
+        return (long) getInt(pos) << 32 | (getInt(pos + 4) & 0xFFFFFFFFL);
+    }
+}
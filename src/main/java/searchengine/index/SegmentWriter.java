@@ -0,0 +1,125 @@
+package searchengine.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Пишет файл сегмента (формат описан в {@link Segment}).
+ * Леммы добавляются по возрастанию id; файл пишется во временный и переименовывается в {@link #finish}.
+ */
+public class SegmentWriter implements Closeable {
+    private final Path path;
+    private final Path tmp;
+    private final int siteId;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+
+    // словарь копится в памяти: 3 числа на лемму
+    private int[] dictLemmaIds = new int[1024];
+    private int[] dictCounts = new int[1024];
+    private long[] dictOffsets = new long[1024];
+    private int lemmaCount;
+    private int lastLemmaId = Integer.MIN_VALUE;
+    private long position;
+
+    public SegmentWriter(Path path, int siteId) throws IOException {
+        this.path = path;
+        this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.siteId = siteId;
+        this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    /**
+     * Записывает список страниц леммы; пустые списки пропускаются.
+     */
+    public void addLemma(int lemmaId, PostingList.Snapshot postings) throws IOException {
+        if (lemmaId <= lastLemmaId) {
+            throw new IllegalArgumentException("Lemma ids must be added in ascending order: " + lemmaId);
+        }
+        if (postings.size() == 0) {
+            return;
+        }
+        lastLemmaId = lemmaId;
+        if (lemmaCount == dictLemmaIds.length) {
+            int capacity = lemmaCount * 2;
+            dictLemmaIds = Arrays.copyOf(dictLemmaIds, capacity);
+            dictCounts = Arrays.copyOf(dictCounts, capacity);
+            dictOffsets = Arrays.copyOf(dictOffsets, capacity);
+        }
+        dictLemmaIds[lemmaCount] = lemmaId;
+        dictCounts[lemmaCount] = postings.size();
+        dictOffsets[lemmaCount] = position;
+        lemmaCount++;
+
+        writeDeltas(postings.pageIds(), postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            out.writeFloat(postings.ranks()[i]);
+        }
+        position += 4L * postings.size();
+    }
+
+    /**
+     * Дописывает список страниц сегмента, словарь и концевик, после чего атомарно публикует файл.
+     *
+     * @param pageIds отсортированные id всех страниц сегмента
+     */
+    public void finish(int[] pageIds, int pageCount) throws IOException {
+        long pagesOffset = position;
+        writeDeltas(pageIds, pageCount);
+        long dictOffset = position;
+        for (int i = 0; i < lemmaCount; i++) {
+            out.writeInt(dictLemmaIds[i]);
+            out.writeInt(dictCounts[i]);
+            out.writeLong(dictOffsets[i]);
+        }
+        position += (long) Segment.DICT_ENTRY_BYTES * lemmaCount;
+
+        out.writeLong(dictOffset);
+        out.writeLong(pagesOffset);
+        out.writeInt(lemmaCount);
+        out.writeInt(pageCount);
+        out.writeInt(siteId);
+        out.writeInt(Segment.VERSION);
+        out.writeInt(Segment.MAGIC);
+        position += Segment.FOOTER_BYTES;
+        out.flush();
+        channel.force(true);
+        out.close();
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Закрывает файл; если finish не был вызван, временный файл удаляется */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        Files.deleteIfExists(tmp);
+    }
+
+    private void writeDeltas(int[] values, int size) throws IOException {
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarInt(values[i] - previous);
+            previous = values[i];
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            position++;
+        }
+        out.writeByte(value);
+        position++;
+    }
+}
@@ -0,0 +1,37 @@
+package searchengine.index;
+
+import searchengine.util.StringHash;
+
+import java.util.Map;
+
+/**
+ * 64-битный SimHash (Charikar) набора лемм страницы: каждая лемма голосует за биты своего хеша
+ * с весом, равным числу вхождений. У почти одинаковых страниц (версия для печати, зеркало
+ * с другой навигацией) отпечатки отличаются в нескольких битах.
+ */
+public final class SimHash {
+    private SimHash() {
+    }
+
+    public static long of(Map<String, Integer> weights) {
+        long[] votes = new long[64];
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            long hash = StringHash.hash64(entry.getKey());
+            int weight = entry.getValue();
+            for (int bit = 0; bit < 64; bit++) {
+                votes[bit] += ((hash >>> bit) & 1) != 0 ? weight : -weight;
+            }
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return simHash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,155 @@
+package searchengine.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отпечатки SimHash страниц сайта с поиском соседа на расстоянии Хэмминга не больше maxDistance.
+ * Отпечаток режется на maxDistance + 1 блоков; по принципу Дирихле у соседей хотя бы один блок
+ * совпадает целиком, поэтому кандидаты берутся из таблиц по блокам, а не перебором всех страниц.
+ * Методы синхронизированы: страницы сайта индексируются в нескольких потоках.
+ */
+public final class SimHashIndex {
+    /** Отпечаток страницы; pageId = 0, пока страница занята ({@link #claim}), но ещё не записана */
+    public static final class Entry {
+        private final long hash;
+        private int pageId;
+
+        private Entry(long hash, int pageId) {
+            this.hash = hash;
+            this.pageId = pageId;
+        }
+
+        public long hash() {
+            return hash;
+        }
+
+        public int pageId() {
+            return pageId;
+        }
+    }
+
+    private final int maxDistance;
+    private final int[] blockShift;
+    private final long[] blockMask;
+    // по блоку: значение блока -> отпечатки с таким блоком
+    private final List<Map<Long, List<Entry>>> tables = new ArrayList<>();
+    private final Map<Integer, Entry> byPage = new HashMap<>();
+
+    public SimHashIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 15) {
+            throw new IllegalArgumentException("maxDistance must be in [0, 15]: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        int blocks = maxDistance + 1;
+        blockShift = new int[blocks];
+        blockMask = new long[blocks];
+        for (int i = 0, shift = 0; i < blocks; i++) {
+            int bits = 64 / blocks + (i < 64 % blocks ? 1 : 0);
+            blockShift[i] = shift;
+            blockMask[i] = bits == 64 ? -1L : (1L << bits) - 1;
+            shift += bits;
+            tables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Ищет отпечаток на расстоянии не больше maxDistance; если его нет — добавляет hash
+     * как отпечаток ещё не записанной страницы (затем {@link #assign} или {@link #release}).
+     * Проверка и добавление атомарны, поэтому из двух почти одинаковых страниц,
+     * пришедших одновременно, проиндексирована будет одна.
+     *
+     * @return найденный сосед или null, если hash добавлен
+     */
+    public synchronized Entry claim(long hash) {
+        Entry near = findNear(hash);
+        if (near != null) {
+            return near;
+        }
+        add(new Entry(hash, 0));
+        return null;
+    }
+
+    /** Отпечаток из {@link #claim} принадлежит записанной странице pageId */
+    public synchronized void assign(long hash, int pageId) {
+        for (Entry entry : bucket(0, hash)) {
+            if (entry.hash == hash && entry.pageId == 0) {
+                entry.pageId = pageId;
+                byPage.put(pageId, entry);
+                return;
+            }
+        }
+    }
+
+    /** Страница из {@link #claim} не была записана */
+    public synchronized void release(long hash) {
+        for (Entry entry : bucket(0, hash)) {
+            if (entry.hash == hash && entry.pageId == 0) {
+                remove(entry);
+                return;
+            }
+        }
+    }
+
+    /** Отпечаток уже записанной страницы (при загрузке из БД) */
+    public synchronized void put(int pageId, long hash) {
+        Entry entry = new Entry(hash, pageId);
+        add(entry);
+        byPage.put(pageId, entry);
+    }
+
+    public synchronized void removePage(int pageId) {
+        Entry entry = byPage.remove(pageId);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    public synchronized int size() {
+        return tables.get(0).values().stream().mapToInt(List::size).sum();
+    }
+
+    private Entry findNear(long hash) {
+        for (int block = 0; block < tables.size(); block++) {
+            List<Entry> candidates = tables.get(block).get(blockValue(block, hash));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (SimHash.distance(candidate.hash, hash) <= maxDistance) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void add(Entry entry) {
+        for (int block = 0; block < tables.size(); block++) {
+            tables.get(block).computeIfAbsent(blockValue(block, entry.hash), v -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        for (int block = 0; block < tables.size(); block++) {
+            Long key = blockValue(block, entry.hash);
+            List<Entry> list = tables.get(block).get(key);
+            if (list != null) {
+                list.remove(entry);
+                if (list.isEmpty()) {
+                    tables.get(block).remove(key);
+                }
+            }
+        }
+    }
+
+    private List<Entry> bucket(int block, long hash) {
+        return tables.get(block).getOrDefault(blockValue(block, hash), List.of());
+    }
+
+    private long blockValue(int block, long hash) {
+        return (hash >>> blockShift[block]) & blockMask[block];
+    }
+}
@@ -0,0 +1,403 @@
+package searchengine.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс одного сайта: неизменяемые сегменты на диске плюс таблица в памяти
+ * со страницами, записанными после последнего сброса.
+ * Сброс: активная таблица замораживается ({@link #freeze()}), пишется в сегмент
+ * и заменяется им ({@link #publish}); пока сегмент пишется, замороженная таблица участвует в поиске.
+ * Удалённые страницы, оставшиеся в сегментах, отсеиваются при чтении по отсортированному массиву id
+ * до ближайшего слияния ({@link #needsMerge}).
+ */
+public class SiteIndex {
+    private final int siteId;
+    // запись страниц берёт read-lock (писателей много), смена таблиц и сегментов — write-lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile List<Segment> segments = List.of();
+    private volatile MemTable active = new MemTable();
+    private volatile MemTable frozen;
+    // отсортированные id страниц, удалённых из БД, но ещё лежащих в сегментах;
+    // массив не меняется, при удалении страниц заменяется новым под write-lock
+    private volatile int[] deletedPages = new int[0];
+    private final AtomicBoolean mergeRequested = new AtomicBoolean();
+
+    public SiteIndex(int siteId) {
+        this.siteId = siteId;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    /** Страницы в памяти, ещё не записанные в сегмент */
+    public static class MemTable {
+        private final Map<Integer, PostingList> lists = new ConcurrentHashMap<>();
+        private final Set<Integer> pages = ConcurrentHashMap.newKeySet();
+        private final AtomicLong postings = new AtomicLong();
+        private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+        public boolean isEmpty() {
+            return pages.isEmpty();
+        }
+
+        /** Списки лемм по возрастанию id леммы */
+        public TreeMap<Integer, PostingList.Snapshot> sortedSnapshots() {
+            TreeMap<Integer, PostingList.Snapshot> sorted = new TreeMap<>();
+            lists.forEach((lemmaId, list) -> sorted.put(lemmaId, list.snapshot()));
+            return sorted;
+        }
+
+        public int[] sortedPages() {
+            int[] ids = pages.stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(ids);
+            return ids;
+        }
+
+        private PostingList.Snapshot snapshot(int lemmaId) {
+            PostingList list = lists.get(lemmaId);
+            return list == null ? PostingList.EMPTY : list.snapshot();
+        }
+    }
+
+    /**
+     * Добавляет страницу в активную таблицу
+     */
+    public void addPage(int pageId, Map<Integer, Float> ranks) {
+        lock.readLock().lock();
+        try {
+            MemTable table = active;
+            table.pages.add(pageId);
+            ranks.forEach((lemmaId, rank) ->
+                    table.lists.computeIfAbsent(lemmaId, id -> new PostingList(siteId)).add(pageId, rank));
+            table.postings.addAndGet(ranks.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет одну запись (лемма, страница) в активную таблицу — для загрузки из таблицы index
+     */
+    public void addPosting(int lemmaId, int pageId, float rank) {
+        lock.readLock().lock();
+        try {
+            MemTable table = active;
+            table.pages.add(pageId);
+            table.lists.computeIfAbsent(lemmaId, id -> new PostingList(siteId)).add(pageId, rank);
+            table.postings.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * true ровно один раз для активной таблицы, когда в ней набралось не меньше threshold записей
+     */
+    public boolean needsFlush(long threshold) {
+        MemTable table = active;
+        return table.postings.get() >= threshold && table.flushRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * Исключает страницы из поиска: из таблиц в памяти они убираются сразу,
+     * для сегментов (и замороженной таблицы, которая, возможно, уже пишется) запоминаются до ближайшего слияния.
+     */
+    public void removePages(Collection<Integer> pageIds) {
+        lock.writeLock().lock();
+        try {
+            int[] tombstones = new int[pageIds.size()];
+            int count = 0;
+            for (Integer pageId : pageIds) {
+                // страница лежит ровно в одном месте: из активной таблицы её достаточно убрать
+                if (!removeFrom(active, pageId)) {
+                    if (frozen != null) {
+                        removeFrom(frozen, pageId);
+                    }
+                    tombstones[count++] = pageId;
+                }
+            }
+            if (count > 0) {
+                int[] added = Arrays.copyOf(tombstones, count);
+                Arrays.sort(added);
+                deletedPages = unionSorted(deletedPages, added);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean removeFrom(MemTable table, int pageId) {
+        if (table.pages.remove(pageId)) {
+            table.lists.values().forEach(list -> list.remove(pageId));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Замораживает активную таблицу для записи в сегмент.
+     *
+     * @return замороженная таблица; null, если писать нечего или предыдущий сброс ещё не закончен
+     * (тогда запрос сброса активной таблицы снимается, и {@link #needsFlush} запросит его снова)
+     */
+    public MemTable freeze() {
+        lock.writeLock().lock();
+        try {
+            if (frozen != null || active.isEmpty()) {
+                active.flushRequested.set(false);
+                return null;
+            }
+            frozen = active;
+            active = new MemTable();
+            return frozen;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Заменяет замороженную таблицу записанным из неё сегментом */
+    public void publish(Segment segment) {
+        lock.writeLock().lock();
+        try {
+            List<Segment> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            segments = List.copyOf(updated);
+            frozen = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Сброс не удался: возвращает данные замороженной таблицы в активную */
+    public void unfreeze() {
+        lock.writeLock().lock();
+        try {
+            if (frozen == null) {
+                return;
+            }
+            MemTable failed = frozen;
+            frozen = null;
+            failed.pages.forEach(active.pages::add);
+            failed.lists.forEach((lemmaId, list) -> {
+                PostingList.Snapshot s = list.snapshot();
+                PostingList target = active.lists.computeIfAbsent(lemmaId, id -> new PostingList(siteId));
+                for (int i = 0; i < s.size(); i++) {
+                    target.add(s.pageIds()[i], s.ranks()[i]);
+                }
+                active.postings.addAndGet(s.size());
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Добавляет сегменты, загруженные с диска при старте */
+    public void addSegments(Collection<Segment> loaded) {
+        lock.writeLock().lock();
+        try {
+            List<Segment> updated = new ArrayList<>(segments);
+            updated.addAll(loaded);
+            segments = List.copyOf(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * true ровно один раз до {@link #mergeFinished}, когда сегментов больше maxSegments
+     * или удалённые страницы составляют больше maxDeletedRatio страниц сегментов
+     */
+    public boolean needsMerge(int maxSegments, double maxDeletedRatio) {
+        List<Segment> segs = segments;
+        boolean needed = segs.size() > maxSegments || (!segs.isEmpty() && deletedRatio() > maxDeletedRatio);
+        return needed && mergeRequested.compareAndSet(false, true);
+    }
+
+    /** Слияние закончено (или не удалось): {@link #needsMerge} снова может его запросить */
+    public void mergeFinished() {
+        mergeRequested.set(false);
+    }
+
+    /** Доля удалённых страниц среди страниц всех сегментов */
+    public double deletedRatio() {
+        long pages = 0;
+        for (Segment segment : segments) {
+            pages += segment.pageCount();
+        }
+        return pages == 0 ? 0 : (double) deletedPages.length / pages;
+    }
+
+    /**
+     * Заменяет слитые сегменты результатом слияния и забывает учтённые в нём удаления
+     *
+     * @param appliedDeletes отсортированные id страниц, выброшенных при слиянии
+     */
+    public void replaceSegments(List<Segment> merged, Segment result, int[] appliedDeletes) {
+        lock.writeLock().lock();
+        try {
+            List<Segment> updated = new ArrayList<>();
+            updated.add(result);
+            for (Segment segment : segments) {
+                if (!merged.contains(segment)) {
+                    updated.add(segment);
+                }
+            }
+            segments = List.copyOf(updated);
+            deletedPages = differenceSorted(deletedPages, appliedDeletes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /** Отсортированные id удалённых страниц; массив не изменяется */
+    public int[] deletedPages() {
+        return deletedPages;
+    }
+
+    /**
+     * Список страниц леммы по всем сегментам и таблицам в памяти, без удалённых страниц
+     */
+    public PostingList.Snapshot postings(int lemmaId) {
+        List<Segment> segs;
+        MemTable frozenTable;
+        MemTable activeTable;
+        int[] deleted;
+        lock.readLock().lock();
+        try {
+            segs = segments;
+            frozenTable = frozen;
+            activeTable = active;
+            deleted = deletedPages;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // более поздний источник перекрывает более ранний
+        PostingList.Snapshot result = PostingList.EMPTY;
+        for (Segment segment : segs) {
+            result = union(result, segment.postings(lemmaId));
+        }
+        if (frozenTable != null) {
+            result = union(result, frozenTable.snapshot(lemmaId));
+        }
+        result = union(result, activeTable.snapshot(lemmaId));
+        return deleted.length == 0 ? result : without(result, deleted);
+    }
+
+    /**
+     * Объединение двух отсортированных списков; при совпадении id страницы берётся rank из b
+     */
+    public static PostingList.Snapshot union(PostingList.Snapshot a, PostingList.Snapshot b) {
+        if (b.size() == 0) {
+            return a;
+        }
+        if (a.size() == 0) {
+            return b;
+        }
+        int[] pageIds = new int[a.size() + b.size()];
+        float[] ranks = new float[a.size() + b.size()];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size() || j < b.size()) {
+            if (j == b.size() || (i < a.size() && a.pageIds()[i] < b.pageIds()[j])) {
+                pageIds[n] = a.pageIds()[i];
+                ranks[n++] = a.ranks()[i++];
+            } else {
+                if (i < a.size() && a.pageIds()[i] == b.pageIds()[j]) {
+                    i++;
+                }
+                pageIds[n] = b.pageIds()[j];
+                ranks[n++] = b.ranks()[j++];
+            }
+        }
+        return new PostingList.Snapshot(pageIds, ranks, n);
+    }
+
+    /**
+     * Список без страниц из отсортированного deleted; если ни одна из них не попадает
+     * в диапазон id списка, возвращается сам список без копирования
+     */
+    public static PostingList.Snapshot without(PostingList.Snapshot s, int[] deleted) {
+        if (s.size() == 0) {
+            return s;
+        }
+        int d = lowerBound(deleted, 0, s.pageIds()[0]);
+        if (d == deleted.length || deleted[d] > s.pageIds()[s.size() - 1]) {
+            return s;
+        }
+        int[] pageIds = new int[s.size()];
+        float[] ranks = new float[s.size()];
+        int n = 0;
+        for (int i = 0; i < s.size(); i++) {
+            int pageId = s.pageIds()[i];
+            // оба массива отсортированы: позиция в deleted только растёт
+            if (d < deleted.length && deleted[d] < pageId) {
+                d = lowerBound(deleted, d, pageId);
+            }
+            if (d == deleted.length || deleted[d] != pageId) {
+                pageIds[n] = pageId;
+                ranks[n++] = s.ranks()[i];
+            }
+        }
+        return new PostingList.Snapshot(pageIds, ranks, n);
+    }
+
+    /** Объединение отсортированных массивов без повторов */
+    public static int[] unionSorted(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (n == 0 || result[n - 1] != next) {
+                result[n++] = next;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Элементы отсортированного a, которых нет в отсортированном b */
+    private static int[] differenceSorted(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int n = 0;
+        int j = 0;
+        for (int value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                result[n++] = value;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Первая позиция в sorted[from..] со значением не меньше key */
+    private static int lowerBound(int[] sorted, int from, int key) {
+        int pos = Arrays.binarySearch(sorted, from, sorted.length, key);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор k лучших страниц по относительной релевантности.
+ * Хранит только k кандидатов в min-куче (в голове — худший из лучших),
+ * остальные найденные страницы лишь считает.
+ *
+ * @param <T> чьи страницы (сайт), попадает в результат вместе с id страницы
+ */
+public final class TopPages<T> {
+    /** Найденная страница до загрузки её содержимого */
+    public record Hit<T>(T owner, int pageId, float relevance) {
+    }
+
+    // по возрастанию релевантности, при равенстве выше страница с меньшим id
+    private static final Comparator<Hit<?>> WORST_FIRST = Comparator
+            .<Hit<?>>comparingDouble(Hit::relevance)
+            .thenComparing(Hit::pageId, Comparator.reverseOrder());
+    private static final Comparator<Hit<?>> BEST_FIRST = WORST_FIRST.reversed();
+
+    private final int k;
+    private final PriorityQueue<Hit<T>> heap;
+    private int matched;
+
+    public TopPages(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), WORST_FIRST);
+    }
+
+    /**
+     * Учитывает страницы одного сайта; абсолютная релевантность делится на максимальную по сайту
+     */
+    public void addAll(T owner, PageScores scores) {
+        matched += scores.size();
+        float maxAbs = scores.maxScore();
+        for (int i = 0; i < scores.size() && k > 0; i++) {
+            float rel = maxAbs > 0 ? scores.scores()[i] / maxAbs : 0f;
+            Hit<T> hit = new Hit<>(owner, scores.pageIds()[i], rel);
+            if (heap.size() < k) {
+                heap.add(hit);
+            } else if (WORST_FIRST.compare(hit, heap.peek()) > 0) {
+                // тот же порядок, что при сортировке и слиянии: набор страниц не зависит от порядка поступления
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+    }
+
+    /** Сколько всего страниц было передано в addAll */
+    public int matched() {
+        return matched;
+    }
+
+    /** Отобранные страницы по убыванию релевантности */
+    public List<Hit<T>> sorted() {
+        List<Hit<T>> best = new ArrayList<>(heap);
+        best.sort(BEST_FIRST);
+        return best;
+    }
+
+    /**
+     * k-путевое слияние списков, каждый из которых уже упорядочен по убыванию релевантности
+     * (результаты {@link #sorted()} отдельных сайтов). В куче по одному курсору на список,
+     * поэтому слияние стоит O(k log n) для n списков.
+     *
+     * @return не больше k лучших страниц по убыванию релевантности
+     */
+    public static <T> List<Hit<T>> merge(List<List<Hit<T>>> sortedLists, int k) {
+        record Cursor<T>(List<Hit<T>> list, int index) {
+            Hit<T> head() {
+                return list.get(index);
+            }
+        }
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (a, b) -> BEST_FIRST.compare(a.head(), b.head()));
+        for (List<Hit<T>> list : sortedLists) {
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list, 0));
+            }
+        }
+        List<Hit<T>> merged = new ArrayList<>(Math.min(k, 1024));
+        while (merged.size() < k && !heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.index() + 1 < cursor.list().size()) {
+                heads.add(new Cursor<>(cursor.list(), cursor.index() + 1));
+            }
+        }
+        return merged;
+    }
+}
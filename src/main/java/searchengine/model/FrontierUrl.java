@@ -0,0 +1,45 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * URL из границы обхода сайта, сохранённый для продолжения прерванной индексации.
+ * Таблица заполняется и читается через {@link searchengine.repository.FrontierJdbcRepository};
+ * сущность нужна только для создания схемы.
+ */
+@Entity
+@Table(name = "frontier_url",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "url_hash"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FrontierUrl {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Сайт, к обходу которого относится URL */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    /** 64-битный отпечаток url (уникален в пределах сайта) */
+    @Column(name = "url_hash", nullable = false)
+    private Long urlHash;
+
+    /** Абсолютный URL; у обработанных строк null — для восстановления обхода им достаточно отпечатка */
+    @Column(name = "url", columnDefinition = "TEXT")
+    private String url;
+
+    /** Глубина: число переходов по ссылкам от главной страницы */
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    /** Страница загружена и обработана */
+    @Column(name = "done", nullable = false)
+    private Boolean done;
+}
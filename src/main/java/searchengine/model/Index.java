@@ -5,7 +5,11 @@ import lombok.*;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "index")
+@Table(name = "index",
+        indexes = {
+                @javax.persistence.Index(name = "idx_index_page", columnList = "page_id"),
+                @javax.persistence.Index(name = "idx_index_lemma", columnList = "lemma_id")
+        })
 @Getter @Setter
 @NoArgsConstructor
 @AllArgsConstructor
@@ -5,7 +5,8 @@ import lombok.*;
 import javax.persistence.*;
 @Entity
 @Table(name = "lemma",
-        uniqueConstraints = @UniqueConstraint(columnNames = {"lemma", "site_id"}))
+        uniqueConstraints = @UniqueConstraint(columnNames = {"lemma", "site_id"}),
+        indexes = @javax.persistence.Index(name = "idx_lemma_site", columnList = "site_id"))
 @Getter
 @Setter
 @NoArgsConstructor
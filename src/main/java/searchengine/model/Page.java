@@ -9,7 +9,10 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "page",
-        indexes = @javax.persistence.Index(name = "idx_page_path", columnList = "path"))
+        indexes = {
+                @javax.persistence.Index(name = "idx_page_path", columnList = "path"),
+                @javax.persistence.Index(name = "idx_page_site", columnList = "site_id")
+        })
 @Getter @Setter
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,9 +34,49 @@ public class Page {
     @Column(name = "code", nullable = false)
     private Integer code;
 
-    /** Контент страницы (HTML) */
+    /** Контент страницы (HTML); пустая строка, если он вынесен в архив (см. archiveFile) */
     @Column(name = "content", columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    /** Заголовок страницы, извлечённый при индексации */
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;
+
+    /** Видимый текст страницы без разметки (по нему строятся сниппеты) */
+    @Column(name = "text", columnDefinition = "TEXT")
+    private String text;
+
+    /** Длина text в символах */
+    @Column(name = "text_length")
+    private Integer textLength;
+
+    /** Заголовок ETag ответа, отправляется как If-None-Match при повторном обходе */
+    @Column(name = "etag", columnDefinition = "TEXT")
+    private String etag;
+
+    /** Заголовок Last-Modified ответа, отправляется как If-Modified-Since */
+    @Column(name = "last_modified", columnDefinition = "TEXT")
+    private String lastModified;
+
+    /** SHA-256 заголовка и текста: совпал — страница не переиндексируется */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /** SimHash лемм страницы для поиска почти одинаковых страниц */
+    @Column(name = "simhash")
+    private Long simHash;
+
+    /** Номер файла архива сайта с HTML страницы; null — HTML хранится в content */
+    @Column(name = "archive_file")
+    private Integer archiveFile;
+
+    /** Смещение записи в файле архива */
+    @Column(name = "archive_offset")
+    private Long archiveOffset;
+
+    /** Длина записи в файле архива (сжатая) */
+    @Column(name = "archive_length")
+    private Integer archiveLength;
+
 
 }
\ No newline at end of file
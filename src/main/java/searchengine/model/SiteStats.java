@@ -0,0 +1,32 @@
+package searchengine.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Счётчики страниц и лемм сайта для /api/statistics.
+ * Таблица ведётся через {@link searchengine.services.impl.SiteStatsTracker};
+ * сущность нужна только для создания схемы.
+ */
+@Entity
+@Table(name = "site_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SiteStats {
+    /** id сайта (строка удаляется вместе с сайтом) */
+    @Id
+    @Column(name = "site_id")
+    private Integer siteId;
+
+    /** Число строк page сайта */
+    @Column(name = "pages", nullable = false)
+    private Long pages;
+
+    /** Число строк lemma сайта */
+    @Column(name = "lemmas", nullable = false)
+    private Long lemmas;
+}
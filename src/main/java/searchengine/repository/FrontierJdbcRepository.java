@@ -0,0 +1,86 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.crawler.FrontierEntry;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Сохранённая граница обхода (таблица frontier_url): все встреченные URL сайта
+ * с отметкой, обработана ли страница. Пишется пачками из журнала границы обхода (FrontierJournal).
+ * Строка URL нужна только необработанным страницам; у обработанных остаётся 64-битный отпечаток.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FrontierJdbcRepository {
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** В схемах, созданных до хранения одних отпечатков, столбец url объявлен NOT NULL */
+    @PostConstruct
+    void allowDoneWithoutUrl() {
+        jdbcTemplate.execute("ALTER TABLE IF EXISTS frontier_url ALTER COLUMN url DROP NOT NULL");
+    }
+
+    /** Добавляет новые URL в очередь сайта; уже сохранённые пропускаются */
+    public void insertQueued(int siteId, List<FrontierEntry> entries) {
+        for (int from = 0; from < entries.size(); from += ROWS_PER_STATEMENT) {
+            List<FrontierEntry> chunk = entries.subList(from, Math.min(from + ROWS_PER_STATEMENT, entries.size()));
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO frontier_url (site_id, url_hash, url, depth, done) VALUES (?, ?, ?, ?, false) " +
+                            "ON CONFLICT (site_id, url_hash) DO NOTHING",
+                    chunk, chunk.size(), (ps, entry) -> {
+                        ps.setInt(1, siteId);
+                        ps.setLong(2, FrontierEntry.fingerprint(entry.url()));
+                        ps.setString(3, entry.url());
+                        ps.setInt(4, entry.depth());
+                    });
+        }
+    }
+
+    /** Отмечает страницы сайта как обработанные и забывает их URL */
+    public void markDone(int siteId, Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        Long[] hashes = urls.stream().map(FrontierEntry::fingerprint).toArray(Long[]::new);
+        jdbcTemplate.update("UPDATE frontier_url SET done = true, url = NULL WHERE site_id = ? AND url_hash = ANY(?)", ps -> {
+            ps.setInt(1, siteId);
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", hashes));
+        });
+    }
+
+    /** true, если у сайта есть сохранённые и ещё не обработанные URL */
+    public boolean hasPending(int siteId) {
+        Boolean pending = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM frontier_url WHERE site_id = ? AND NOT done)", Boolean.class, siteId);
+        return Boolean.TRUE.equals(pending);
+    }
+
+    /**
+     * Читает сохранённую границу: done получает отпечатки обработанных URL,
+     * queued — ещё не обработанные URL (по глубине)
+     */
+    public void load(int siteId, LongConsumer done, Consumer<FrontierEntry> queued) {
+        jdbcTemplate.query("SELECT url_hash FROM frontier_url WHERE site_id = ? AND done",
+                rs -> {
+                    done.accept(rs.getLong(1));
+                }, siteId);
+        jdbcTemplate.query("SELECT url, depth FROM frontier_url WHERE site_id = ? AND NOT done ORDER BY depth, id",
+                rs -> {
+                    queued.accept(new FrontierEntry(rs.getString(1), rs.getInt(2)));
+                }, siteId);
+    }
+
+    /** Забывает границу сайта (обход завершён) */
+    public void deleteBySite(int siteId) {
+        jdbcTemplate.update("DELETE FROM frontier_url WHERE site_id = ?", siteId);
+    }
+}
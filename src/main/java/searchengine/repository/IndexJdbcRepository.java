@@ -0,0 +1,67 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.config.IndexingSettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись в таблицу index через JDBC batch.
+ * Index использует GenerationType.IDENTITY, при котором Hibernate не группирует INSERT,
+ * поэтому строки страницы пишутся мимо JPA пачками по jdbcBatchSize.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IndexJdbcRepository {
+    private static final String INSERT_SQL = "INSERT INTO \"index\" (page_id, lemma_id, rank) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexingSettings indexingSettings;
+
+    /**
+     * Сохраняет связи страницы с леммами.
+     *
+     * @param pageId id страницы
+     * @param ranks  id леммы -> rank (число вхождений на странице)
+     */
+    public void insertPagePostings(int pageId, Map<Integer, Float> ranks) {
+        if (ranks.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Integer, Float>> rows = new ArrayList<>(ranks.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, indexingSettings.getJdbcBatchSize(), (ps, row) -> {
+            ps.setInt(1, pageId);
+            ps.setInt(2, row.getKey());
+            ps.setFloat(3, row.getValue());
+        });
+    }
+
+    /**
+     * Леммы, записанные для страницы.
+     *
+     * @return лемма -> id леммы
+     */
+    public Map<String, Integer> findPageLemmas(int pageId) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        jdbcTemplate.query("SELECT l.lemma, i.lemma_id FROM \"index\" i JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id = ?",
+                rs -> {
+                    lemmas.put(rs.getString(1), rs.getInt(2));
+                }, pageId);
+        return lemmas;
+    }
+
+    /** Удаляет строки index переданных страниц */
+    public void deletePagePostings(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM \"index\" WHERE page_id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", pageIds.toArray())));
+    }
+}
@@ -1,15 +1,15 @@
 package searchengine.repository;
 
-import com.sun.istack.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.search.PageRelevance;
 import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
-import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -20,7 +20,35 @@ public interface IndexRepository extends JpaRepository<Index, Long> {
     List<Index> findByPage(Page page);
     List<Index> findByLemma(Lemma lemma);
 
-    void deleteAllByPage_Site(@NotNull Site existing);//todo
+    /**
+     * Страницы сайта, содержащие все леммы из lemmaIds, с суммой rank этих лемм,
+     * по убыванию релевантности. Считается одним запросом вместо findByLemmaAndPage на каждую пару.
+     *
+     * @param lemmaCount размер lemmaIds (страница должна содержать каждую лемму)
+     */
+    @Query(value = "SELECT i.page_id AS pageId, SUM(i.rank) AS relevance FROM \"index\" i " +
+            "JOIN lemma l ON l.id = i.lemma_id " +
+            "WHERE i.lemma_id IN (:lemmaIds) AND l.site_id = :siteId " +
+            "GROUP BY i.page_id HAVING COUNT(*) = :lemmaCount " +
+            "ORDER BY relevance DESC, i.page_id LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<PageRelevance> findPageRelevance(@Param("siteId") int siteId,
+                                          @Param("lemmaIds") Collection<Integer> lemmaIds,
+                                          @Param("lemmaCount") int lemmaCount,
+                                          @Param("limit") int limit,
+                                          @Param("offset") int offset);
+
+    /**
+     * Число страниц сайта, содержащих все леммы из lemmaIds (к {@link #findPageRelevance})
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT i.page_id FROM \"index\" i " +
+            "JOIN lemma l ON l.id = i.lemma_id " +
+            "WHERE i.lemma_id IN (:lemmaIds) AND l.site_id = :siteId " +
+            "GROUP BY i.page_id HAVING COUNT(*) = :lemmaCount) matched",
+            nativeQuery = true)
+    long countMatchingPages(@Param("siteId") int siteId,
+                            @Param("lemmaIds") Collection<Integer> lemmaIds,
+                            @Param("lemmaCount") int lemmaCount);
 
 
 }
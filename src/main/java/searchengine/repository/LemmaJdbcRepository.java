@@ -0,0 +1,115 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Пакетные операции над таблицей lemma на чистом SQL (PostgreSQL).
+ * Частота обновляется в самой БД, поэтому запись безопасна при параллельной индексации.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class LemmaJdbcRepository {
+    // 3 параметра на строку, PostgreSQL допускает не больше 65535 параметров в запросе
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Результат upsert лемм
+     *
+     * @param ids      лемма -> id
+     * @param inserted сколько лемм создано (остальные уже были и получили приращение)
+     */
+    public record Upserted(Map<String, Integer> ids, int inserted) {
+    }
+
+    /**
+     * Добавляет к частотам лемм сайта переданные приращения, создавая недостающие леммы,
+     * и возвращает их id. Один запрос INSERT ... ON CONFLICT на каждые 1000 лемм.
+     *
+     * @param siteId     id сайта
+     * @param increments лемма -> на сколько увеличить frequency
+     * @return id лемм и число созданных
+     */
+    public Upserted upsertFrequencies(int siteId, Map<String, Integer> increments) {
+        Map<String, Integer> ids = new HashMap<>(increments.size() * 2);
+        int[] inserted = {0};
+        // одинаковый порядок строк во всех потоках, чтобы встречные upsert не ловили deadlock
+        List<Map.Entry<String, Integer>> rows = new ArrayList<>(new TreeMap<>(increments).entrySet());
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<Map.Entry<String, Integer>> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO lemma (lemma, site_id, frequency) VALUES ");
+            Object[] args = new Object[chunk.size() * 3];
+            int i = 0;
+            for (Map.Entry<String, Integer> row : chunk) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args[i++] = row.getKey();
+                args[i++] = siteId;
+                args[i++] = row.getValue();
+            }
+            sql.append(" ON CONFLICT (lemma, site_id) DO UPDATE SET frequency = lemma.frequency + EXCLUDED.frequency")
+                    // xmax = 0 только у строк, которые вставлены, а не обновлены
+                    .append(" RETURNING id, lemma, (xmax = 0) AS inserted");
+            jdbcTemplate.query(sql.toString(), rs -> {
+                ids.put(rs.getString("lemma"), rs.getInt("id"));
+                if (rs.getBoolean("inserted")) {
+                    inserted[0]++;
+                }
+            }, args);
+        }
+        return new Upserted(ids, inserted[0]);
+    }
+
+    /** Уменьшает на 1 частоту лемм, которые пропали со страницы */
+    public void decrementFrequencies(Collection<Integer> lemmaIds) {
+        if (lemmaIds.isEmpty()) {
+            return;
+        }
+        // тот же порядок блокировок строк, что и у upsert
+        Integer[] ids = lemmaIds.stream().sorted().toArray(Integer[]::new);
+        jdbcTemplate.update("UPDATE lemma SET frequency = frequency - 1 WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids)));
+    }
+
+    /**
+     * Точный пересчёт частот лемм сайта по таблице index: frequency = число страниц с леммой.
+     */
+    public void recountFrequencies(int siteId) {
+        int updated = jdbcTemplate.update(
+                "UPDATE lemma l SET frequency = s.pages " +
+                        "FROM (SELECT i.lemma_id, COUNT(*) AS pages FROM \"index\" i " +
+                        "      JOIN page p ON p.id = i.page_id WHERE p.site_id = ? GROUP BY i.lemma_id) s " +
+                        "WHERE l.id = s.lemma_id AND l.site_id = ? AND l.frequency <> s.pages",
+                siteId, siteId);
+        int orphaned = jdbcTemplate.update(
+                "UPDATE lemma l SET frequency = 0 WHERE l.site_id = ? AND l.frequency <> 0 " +
+                        "AND NOT EXISTS (SELECT 1 FROM \"index\" i WHERE i.lemma_id = l.id)",
+                siteId);
+        log.info("Lemma frequencies recounted for site id={}: {} corrected, {} reset to 0", siteId, updated, orphaned);
+    }
+
+    /**
+     * Вычитает из частот лемм удаляемые страницы: у каждой леммы — число её строк index на этих страницах.
+     * Вызывается до удаления строк index.
+     */
+    public void subtractPages(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE lemma l SET frequency = l.frequency - s.pages " +
+                        "FROM (SELECT lemma_id, COUNT(*) AS pages FROM \"index\" WHERE page_id = ANY(?) GROUP BY lemma_id) s " +
+                        "WHERE l.id = s.lemma_id",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", pageIds.toArray())));
+    }
+}
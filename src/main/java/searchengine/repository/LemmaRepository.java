@@ -1,6 +1,5 @@
 package searchengine.repository;
 
-import com.sun.istack.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -16,8 +15,6 @@ public interface LemmaRepository extends JpaRepository<Lemma, Long> {
     Optional<Lemma> findByLemmaAndSite(String lemma, Site site);
     long countBySite(Site site);
 
-    void deleteAllBySite(@NotNull Site existing);
-
     int countBySiteId(Integer id);
 
 
@@ -0,0 +1,295 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import searchengine.config.IndexingSettings;
+import searchengine.model.Page;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * HTML страниц в сжатых файлах вне БД; в строке page остаётся только указатель (файл, смещение, длина).
+ * Файлы только дописываются: у каждого сайта свой каталог site-{id} с файлами {номер}.arc,
+ * новый файл начинается, когда текущий превысит archiveFileMaxBytes. Полная переиндексация
+ * создаёт сайт заново, и каталог старого сайта удаляется целиком в {@link #deleteSite}.
+ * Записи заменённых и удалённых страниц остаются в файлах до следующей полной переиндексации.
+ *
+ * Формат записи (каждая сжата отдельно, читать можно с любого смещения):
+ * <pre>
+ * magic int, rawLength int, crc32 int (несжатых байтов), deflate-данные
+ * </pre>
+ * Закрытые файлы читаются через FileChannel.map, текущий — позиционным read.
+ */
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+public class PageArchive {
+    static final int MAGIC = 0x50415231; // "PAR1"
+    static final int HEADER_BYTES = 12;
+
+    private final IndexingSettings indexingSettings;
+
+    // сайт -> файл, в который сейчас дописываются записи
+    private final Map<Integer, Appender> appenders = new ConcurrentHashMap<>();
+    // закрытые (больше не дописываемые) файлы, отображённые в память
+    private final Map<Path, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    /** Текущий файл сайта; запись в него идёт под монитором объекта */
+    private static final class Appender {
+        final int fileNo;
+        final FileChannel channel;
+        long size;
+        boolean closed;
+
+        Appender(int fileNo, FileChannel channel) throws IOException {
+            this.fileNo = fileNo;
+            this.channel = channel;
+            this.size = channel.size();
+        }
+    }
+
+    public boolean isEnabled() {
+        return indexingSettings.isArchivePages();
+    }
+
+    /**
+     * Дописывает HTML страницы в архив сайта, заполняет у страницы указатель
+     * и оставляет в content пустую строку (столбец NOT NULL в существующих схемах)
+     */
+    public void store(Page page) {
+        byte[] raw = page.getContent().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = encode(raw);
+        int siteId = page.getSite().getId();
+        try {
+            while (true) {
+                Appender appender = appenders.computeIfAbsent(siteId, this::openAppender);
+                synchronized (appender) {
+                    if (appender.closed) {
+                        // пока ждали монитор, другой поток начал новый файл
+                        continue;
+                    }
+                    if (appender.size > 0 && appender.size + record.remaining() > indexingSettings.getArchiveFileMaxBytes()) {
+                        roll(siteId, appender);
+                        continue;
+                    }
+                    long offset = appender.size;
+                    int length = record.remaining();
+                    while (record.hasRemaining()) {
+                        appender.channel.write(record, offset + record.position());
+                    }
+                    appender.size += length;
+                    page.setArchiveFile(appender.fileNo);
+                    page.setArchiveOffset(offset);
+                    page.setArchiveLength(length);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive page " + page.getPath(), e);
+        }
+        page.setContent("");
+    }
+
+    /** HTML страницы: из архива, если у неё есть указатель, иначе из столбца content */
+    public String content(Page page) {
+        if (page.getArchiveFile() == null) {
+            return page.getContent();
+        }
+        return read(page.getSite().getId(), page.getArchiveFile(), page.getArchiveOffset(), page.getArchiveLength());
+    }
+
+    public String read(int siteId, int fileNo, long offset, int length) {
+        Path path = file(siteId, fileNo);
+        try {
+            ByteBuffer record = slice(siteId, fileNo, path, offset, length);
+            return new String(decode(record, path, offset), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive record " + path + "@" + offset, e);
+        }
+    }
+
+    /** Закрывает и удаляет архив сайта (после удаления его страниц из БД) */
+    public void deleteSite(int siteId) {
+        Appender appender = appenders.remove(siteId);
+        if (appender != null) {
+            synchronized (appender) {
+                closeQuietly(appender);
+            }
+        }
+        Path dir = siteDir(siteId);
+        mapped.keySet().removeIf(path -> path.startsWith(dir));
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete archive file {}: {}", path, e.getMessage());
+                }
+            });
+            log.info("Page archive of site id={} deleted", siteId);
+        } catch (IOException e) {
+            log.warn("Failed to delete page archive of site id={}: {}", siteId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        appenders.values().forEach(appender -> {
+            synchronized (appender) {
+                closeQuietly(appender);
+            }
+        });
+        appenders.clear();
+    }
+
+    private ByteBuffer slice(int siteId, int fileNo, Path path, long offset, int length) throws IOException {
+        Appender appender = appenders.get(siteId);
+        if (appender == null || appender.fileNo != fileNo) {
+            MappedByteBuffer buffer = mapped.computeIfAbsent(path, PageArchive::map);
+            if (offset + length > buffer.capacity()) {
+                // файл отобразили до того, как в него дописали эту запись (до перезапуска был текущим)
+                mapped.remove(path, buffer);
+                buffer = mapped.computeIfAbsent(path, PageArchive::map);
+            }
+            return buffer.slice((int) offset, length);
+        }
+        // файл ещё дописывается: отображение не увидело бы новых записей
+        ByteBuffer record = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (record.hasRemaining()) {
+                if (channel.read(record, offset + record.position()) < 0) {
+                    throw new IOException("Unexpected end of archive file " + path);
+                }
+            }
+        }
+        return record.flip();
+    }
+
+    private static MappedByteBuffer map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // отображение остаётся действительным и после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer encode(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + HEADER_BYTES);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + out.size());
+        record.putInt(MAGIC).putInt(raw.length).putInt((int) crc.getValue()).put(out.toByteArray());
+        return record.flip();
+    }
+
+    private static byte[] decode(ByteBuffer record, Path path, long offset) throws IOException {
+        if (record.remaining() < HEADER_BYTES || record.getInt(0) != MAGIC) {
+            throw new IOException("No archive record at " + path + "@" + offset);
+        }
+        byte[] raw = new byte[record.getInt(4)];
+        int expectedCrc = record.getInt(8);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record.position(HEADER_BYTES));
+            int n = inflater.inflate(raw);
+            if (n != raw.length || !inflater.finished()) {
+                throw new IOException("Truncated archive record at " + path + "@" + offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record at " + path + "@" + offset, e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch in archive record at " + path + "@" + offset);
+        }
+        return raw;
+    }
+
+    /** Открывает для дописывания последний файл сайта (или первый, если архива ещё нет) */
+    private Appender openAppender(int siteId) {
+        try {
+            Path dir = siteDir(siteId);
+            Files.createDirectories(dir);
+            int last = 0;
+            try (Stream<Path> files = Files.list(dir)) {
+                last = files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(".arc"))
+                        .mapToInt(name -> Integer.parseInt(name.substring(0, name.length() - 4)))
+                        .max().orElse(0);
+            }
+            return open(siteId, last);
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Failed to open page archive of site id=" + siteId, e);
+        }
+    }
+
+    /** Закрывает заполненный файл и делает текущим следующий; вызывается под монитором current */
+    private void roll(int siteId, Appender current) throws IOException {
+        Appender next = open(siteId, current.fileNo + 1);
+        appenders.put(siteId, next);
+        closeQuietly(current);
+        log.debug("Page archive of site id={} rolled over to file {}", siteId, next.fileNo);
+    }
+
+    private Appender open(int siteId, int fileNo) throws IOException {
+        return new Appender(fileNo, FileChannel.open(file(siteId, fileNo),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+    }
+
+    private static void closeQuietly(Appender appender) {
+        appender.closed = true;
+        try {
+            appender.channel.force(false);
+            appender.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close page archive file {}: {}", appender.fileNo, e.getMessage());
+        }
+    }
+
+    private Path siteDir(int siteId) {
+        return Paths.get(indexingSettings.getArchiveDir()).resolve("site-" + siteId);
+    }
+
+    private Path file(int siteId, int fileNo) {
+        return siteDir(siteId).resolve(String.format("%06d.arc", fileNo));
+    }
+}
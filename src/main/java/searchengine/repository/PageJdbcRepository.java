@@ -0,0 +1,69 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.model.Page;
+
+import java.util.Collection;
+
+/**
+ * Запись страниц в таблицу page на чистом SQL: один INSERT ... RETURNING id
+ * без загрузки сущности в контекст персистентности.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PageJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Вставляет страницу и проставляет ей сгенерированный id.
+     *
+     * @return id новой страницы
+     */
+    public int insert(Page page) {
+        Integer id = jdbcTemplate.queryForObject(
+                "INSERT INTO page (site_id, path, code, content, title, text, text_length, etag, last_modified, content_hash, " +
+                        "archive_file, archive_offset, archive_length, simhash) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id",
+                Integer.class,
+                page.getSite().getId(), page.getPath(), page.getCode(), page.getContent(),
+                page.getTitle(), page.getText(), page.getTextLength(),
+                page.getEtag(), page.getLastModified(), page.getContentHash(),
+                page.getArchiveFile(), page.getArchiveOffset(), page.getArchiveLength(), page.getSimHash());
+        page.setId(id);
+        return id;
+    }
+
+    /** Передаёт id и SimHash всех страниц сайта, у которых он посчитан */
+    public void findSimHashes(int siteId, PageSimHashConsumer consumer) {
+        jdbcTemplate.query("SELECT id, simhash FROM page WHERE site_id = ? AND simhash IS NOT NULL",
+                rs -> {
+                    consumer.accept(rs.getInt(1), rs.getLong(2));
+                }, siteId);
+    }
+
+    /** Получатель пары (id страницы, SimHash) */
+    @FunctionalInterface
+    public interface PageSimHashConsumer {
+        void accept(int pageId, long simHash);
+    }
+
+    /** Обновляет ETag и Last-Modified страницы, содержимое которой не изменилось */
+    public void updateValidators(int pageId, String etag, String lastModified) {
+        jdbcTemplate.update("UPDATE page SET etag = ?, last_modified = ? WHERE id = ?", etag, lastModified, pageId);
+    }
+
+    /**
+     * Удаляет страницы; строки index этих страниц должны быть удалены раньше
+     *
+     * @return сколько страниц удалено
+     */
+    public int delete(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM page WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", pageIds.toArray())));
+    }
+}
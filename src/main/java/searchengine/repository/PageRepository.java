@@ -1,22 +1,32 @@
 package searchengine.repository;
 
-import com.sun.istack.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.PageState;
+import searchengine.dto.search.PageSummary;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PageRepository extends JpaRepository<Page, Long> {
+public interface PageRepository extends JpaRepository<Page, Integer> {
     long countBySite(Site site);
     Optional<Page> findByPath(String path);
 
-    void deleteAllBySite(@NotNull Site existing); // todo
-
     int countBySiteId(Integer id);
 
     long countBySiteUrl(String siteUrl);
 
+    /** Заголовок и текст страниц для выдачи, без чтения столбца content */
+    List<PageSummary> findByIdIn(Collection<Integer> ids);
+
+    /** Путь, ETag, Last-Modified и хеш всех страниц сайта — для инкрементального обхода */
+    List<PageState> findBySiteId(Integer siteId);
+
+    /** Уже сохранённая страница сайта с этим путём — для переиндексации через /api/indexPage */
+    Optional<PageState> findFirstBySiteIdAndPath(Integer siteId, String path);
+
 }
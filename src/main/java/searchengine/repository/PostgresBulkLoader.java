@@ -0,0 +1,242 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.config.IndexingSettings;
+import searchengine.model.Page;
+
+import javax.sql.DataSource;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Массовая загрузка сайта при полной переиндексации: строки page, lemma и index копятся
+ * в буферах и уходят в PostgreSQL через COPY ... FROM STDIN (pgjdbc CopyManager).
+ * id страниц и лемм выделяются заранее блоками из их последовательностей,
+ * частоты лемм пересчитываются одним запросом в {@link Session#finish()}.
+ * О странице сообщается получателю сессии только после фиксации сброса, в котором она ушла в БД.
+ */
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+public class PostgresBulkLoader {
+    private static final int ID_BLOCK_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexingSettings indexingSettings;
+
+    /**
+     * Начинает загрузку сайта. Предполагается, что данных сайта в page/lemma/index ещё нет.
+     *
+     * @param committed получает каждую страницу после фиксации её строк в БД
+     */
+    public Session open(int siteId, CommittedPageConsumer committed) {
+        return new Session(siteId, committed);
+    }
+
+    /**
+     * Получатель страницы, строки которой зафиксированы: id страницы, rank по id лемм
+     * и число лемм сайта, впервые записанных вместе с этой страницей
+     */
+    @FunctionalInterface
+    public interface CommittedPageConsumer {
+        void accept(int pageId, Map<Integer, Float> ranks, int newLemmas);
+    }
+
+    /** Страница в буфере сессии */
+    private record BufferedPage(int pageId, Map<Integer, Float> ranks, int newLemmas) {
+    }
+
+    public class Session {
+        private final int siteId;
+        private final CommittedPageConsumer committed;
+        private final Object bufferLock = new Object();
+        private final Object flushLock = new Object();
+
+        // лемма -> id для всего сайта (новые леммы попадают в буфер lemmas)
+        private final Map<String, Integer> lemmaIds = new HashMap<>();
+        private final Deque<Integer> pageIdPool = new ArrayDeque<>();
+        private final Deque<Integer> lemmaIdPool = new ArrayDeque<>();
+
+        private StringBuilder pages = new StringBuilder();
+        private StringBuilder lemmas = new StringBuilder();
+        private StringBuilder postings = new StringBuilder();
+        private List<BufferedPage> bufferedPages = new ArrayList<>();
+        private int bufferedRows;
+        private volatile Exception failure;
+
+        private Session(int siteId, CommittedPageConsumer committed) {
+            this.siteId = siteId;
+            this.committed = committed;
+        }
+
+        /**
+         * Ставит в буфер страницу и её леммы; при заполнении буфера сбрасывает его в БД.
+         * Странице проставляется id.
+         *
+         * @param page        страница (id ещё не задан)
+         * @param lemmaCounts лемма -> число вхождений на странице
+         */
+        public void addPage(Page page, Map<String, Integer> lemmaCounts) {
+            checkNotFailed();
+            Map<Integer, Float> ranks = new HashMap<>(lemmaCounts.size() * 2);
+            int newLemmas = 0;
+            boolean full;
+            synchronized (bufferLock) {
+                int pageId = nextId(pageIdPool, "page");
+                page.setId(pageId);
+                appendRow(pages, pageId, siteId, page.getPath(), page.getCode(), page.getContent(),
+                        page.getTitle(), page.getText(), page.getTextLength(),
+                        page.getEtag(), page.getLastModified(), page.getContentHash(),
+                        page.getArchiveFile(), page.getArchiveOffset(), page.getArchiveLength(), page.getSimHash());
+                for (Map.Entry<String, Integer> entry : lemmaCounts.entrySet()) {
+                    Integer lemmaId = lemmaIds.get(entry.getKey());
+                    if (lemmaId == null) {
+                        lemmaId = nextId(lemmaIdPool, "lemma");
+                        lemmaIds.put(entry.getKey(), lemmaId);
+                        appendRow(lemmas, lemmaId, siteId, entry.getKey(), 0);
+                        newLemmas++;
+                        bufferedRows++;
+                    }
+                    appendRow(postings, pageId, lemmaId, entry.getValue().floatValue());
+                    ranks.put(lemmaId, entry.getValue().floatValue());
+                }
+                bufferedPages.add(new BufferedPage(pageId, ranks, newLemmas));
+                bufferedRows += 1 + lemmaCounts.size();
+                full = bufferedRows >= indexingSettings.getBulkFlushRows();
+            }
+            if (full) {
+                flush();
+            }
+        }
+
+        /**
+         * Отправляет накопленные строки в БД. Порядок lemma, page, index нужен для внешних ключей;
+         * сбросы выполняются строго по одному, чтобы строки index не опередили свои леммы.
+         * После фиксации страницы сброса передаются получателю сессии, при сбое — отбрасываются.
+         */
+        public void flush() {
+            synchronized (flushLock) {
+                checkNotFailed();
+                String pageRows;
+                String lemmaRows;
+                String postingRows;
+                List<BufferedPage> flushedPages;
+                synchronized (bufferLock) {
+                    if (bufferedRows == 0) {
+                        return;
+                    }
+                    pageRows = pages.toString();
+                    lemmaRows = lemmas.toString();
+                    postingRows = postings.toString();
+                    flushedPages = bufferedPages;
+                    pages = new StringBuilder();
+                    lemmas = new StringBuilder();
+                    postings = new StringBuilder();
+                    bufferedPages = new ArrayList<>();
+                    bufferedRows = 0;
+                }
+                try (Connection connection = dataSource.getConnection()) {
+                    // три COPY одного сброса — одна транзакция: при сбое не останется лемм и страниц без строк index
+                    boolean autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                    try {
+                        CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+                        long lemmaCount = copy.copyIn("COPY lemma (id, site_id, lemma, frequency) FROM STDIN", new StringReader(lemmaRows));
+                        long pageCount = copy.copyIn("COPY page (id, site_id, path, code, content, title, text, text_length, etag, last_modified, content_hash, " +
+                                "archive_file, archive_offset, archive_length, simhash) FROM STDIN", new StringReader(pageRows));
+                        long postingCount = copy.copyIn("COPY \"index\" (page_id, lemma_id, rank) FROM STDIN", new StringReader(postingRows));
+                        connection.commit();
+                        log.debug("COPY for site id={}: {} lemmas, {} pages, {} index rows", siteId, lemmaCount, pageCount, postingCount);
+                    } catch (Exception e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(autoCommit);
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                    throw new IllegalStateException("Bulk load failed for site id=" + siteId, e);
+                }
+                // строки зафиксированы: теперь страницы можно отдавать поиску
+                flushedPages.forEach(page -> committed.accept(page.pageId(), page.ranks(), page.newLemmas()));
+            }
+        }
+
+        /**
+         * Дописывает остаток буферов и выставляет frequency каждой леммы сайта
+         * равной числу страниц, на которых она встретилась.
+         */
+        public void finish() {
+            flush();
+            int updated = jdbcTemplate.update(
+                    "UPDATE lemma l SET frequency = s.pages " +
+                            "FROM (SELECT i.lemma_id, COUNT(*) AS pages FROM \"index\" i " +
+                            "      JOIN page p ON p.id = i.page_id WHERE p.site_id = ? GROUP BY i.lemma_id) s " +
+                            "WHERE l.id = s.lemma_id AND l.site_id = ?",
+                    siteId, siteId);
+            log.info("Bulk load finished for site id={}, frequencies reconciled for {} lemmas", siteId, updated);
+        }
+
+        /** true, если сброс в БД не удался: дальнейшие страницы сессия не примет */
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        private void checkNotFailed() {
+            if (failure != null) {
+                throw new IllegalStateException("Bulk load for site id=" + siteId + " has already failed", failure);
+            }
+        }
+
+        private int nextId(Deque<Integer> pool, String table) {
+            if (pool.isEmpty()) {
+                pool.addAll(jdbcTemplate.queryForList(
+                        "SELECT nextval(pg_get_serial_sequence(?, 'id'))::int FROM generate_series(1, ?)",
+                        Integer.class, table, ID_BLOCK_SIZE));
+            }
+            return pool.poll();
+        }
+    }
+
+    /** Строка в текстовом формате COPY: поля через табуляцию */
+    private static void appendRow(StringBuilder out, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append('\t');
+            }
+            appendValue(out, values[i]);
+        }
+        out.append('\n');
+    }
+
+    private static void appendValue(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("\\N");
+            return;
+        }
+        String s = value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\0' -> { } // PostgreSQL не хранит NUL в TEXT
+                default -> out.append(c);
+            }
+        }
+    }
+}
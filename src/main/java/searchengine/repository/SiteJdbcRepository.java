@@ -0,0 +1,34 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Удаление сайта целиком на чистом SQL.
+ * Производные deleteAllBy... из Spring Data загружают каждую сущность и удаляют её отдельным
+ * запросом; здесь каждая таблица чистится одним DELETE по site_id.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class SiteJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final SiteStatsRepository siteStatsRepository;
+
+    /**
+     * Удаляет строки index, леммы, страницы, сохранённую границу обхода, счётчики статистики и саму запись site — в порядке зависимостей,
+     * чтобы не нарушить внешние ключи. Вызывать в транзакции.
+     */
+    public void purge(int siteId) {
+        int postings = jdbcTemplate.update(
+                "DELETE FROM \"index\" i USING page p WHERE p.id = i.page_id AND p.site_id = ?", siteId);
+        int lemmas = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ?", siteId);
+        int pages = jdbcTemplate.update("DELETE FROM page WHERE site_id = ?", siteId);
+        jdbcTemplate.update("DELETE FROM frontier_url WHERE site_id = ?", siteId);
+        siteStatsRepository.delete(siteId);
+        jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+        log.debug("Purged site id={}: {} index rows, {} lemmas, {} pages", siteId, postings, lemmas, pages);
+    }
+}
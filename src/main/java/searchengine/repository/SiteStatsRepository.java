@@ -0,0 +1,74 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счётчики страниц и лемм по сайтам (таблица site_stats) на чистом SQL.
+ * Изменения копит и записывает сюда {@link searchengine.services.impl.SiteStatsTracker};
+ * точные значения можно пересчитать через {@link #recount}.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class SiteStatsRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Число страниц и лемм сайта */
+    public record Counts(long pages, long lemmas) {
+    }
+
+    /** Прибавляет изменения к счётчикам сайта одним upsert */
+    public void add(int siteId, long pages, long lemmas) {
+        jdbcTemplate.update("INSERT INTO site_stats (site_id, pages, lemmas) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (site_id) DO UPDATE SET pages = site_stats.pages + EXCLUDED.pages, " +
+                        "lemmas = site_stats.lemmas + EXCLUDED.lemmas",
+                siteId, pages, lemmas);
+    }
+
+    /**
+     * Счётчики всех сайтов, у которых есть строка site_stats.
+     * @return site id -> счётчики
+     */
+    public Map<Integer, Counts> findAll() {
+        Map<Integer, Counts> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT site_id, pages, lemmas FROM site_stats", rs -> {
+            counts.put(rs.getInt("site_id"), new Counts(rs.getLong("pages"), rs.getLong("lemmas")));
+        });
+        return counts;
+    }
+
+    /** id сайтов, для которых строки site_stats ещё нет (например, проиндексированных до её появления) */
+    public List<Integer> findSitesWithoutStats() {
+        return jdbcTemplate.queryForList(
+                "SELECT s.id FROM site s WHERE NOT EXISTS (SELECT 1 FROM site_stats st WHERE st.site_id = s.id)",
+                Integer.class);
+    }
+
+    /**
+     * Точный пересчёт счётчиков сайта через COUNT по page и lemma.
+     * Во время индексации сайта результат может разойтись на страницы, записанные в момент пересчёта.
+     */
+    public Counts recount(int siteId) {
+        Counts counts = jdbcTemplate.queryForObject(
+                "INSERT INTO site_stats (site_id, pages, lemmas) " +
+                        "VALUES (?, (SELECT COUNT(*) FROM page WHERE site_id = ?), (SELECT COUNT(*) FROM lemma WHERE site_id = ?)) " +
+                        "ON CONFLICT (site_id) DO UPDATE SET pages = EXCLUDED.pages, lemmas = EXCLUDED.lemmas " +
+                        "RETURNING pages, lemmas",
+                (rs, rowNum) -> new Counts(rs.getLong("pages"), rs.getLong("lemmas")),
+                siteId, siteId, siteId);
+        log.info("Site stats recounted for site id={}: {} pages, {} lemmas", siteId, counts.pages(), counts.lemmas());
+        return counts;
+    }
+
+    /** Удаляет счётчики сайта; вызывается при удалении сайта, в той же транзакции */
+    public void delete(int siteId) {
+        jdbcTemplate.update("DELETE FROM site_stats WHERE site_id = ?", siteId);
+    }
+}
@@ -1,18 +1,86 @@
 package searchengine.services;
 
 import org.springframework.stereotype.Service;
+import searchengine.config.SiteConfig;
+import searchengine.dto.crawler.CrawledPage;
+import searchengine.dto.crawler.PageValidators;
+import searchengine.services.impl.CrawlFrontier;
 
+import java.io.IOException;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public interface CrawlerService {
     /**
-     * Обходит все страницы заданного домена в ширину (BFS), передавая каждую найденную ссылку в callback.
+     * Обходит все страницы заданного домена в ширину (BFS), передавая каждую загруженную страницу в callback.
+     * Страницы загружаются в siteConfig.crawlThreads потоков с паузой politenessDelayMs между запросами к хосту,
+     * поэтому callback может вызываться одновременно из нескольких потоков.
      * Останавливается, если isActive.get() вернёт false.
      *
-     * @param baseUrl корневой URL сайта (например, https://example.com)
-     * @param pageCallback вызывается для каждой корректно загруженной страницы с её URL
+     * @param siteConfig настройки сайта: корневой URL (например, https://example.com), число потоков, пауза
+     * @param pageCallback вызывается для каждой корректно загруженной страницы: URL, код ответа, HTML и Document
      * @param isActive флаг продолжения работы (возвращает false, когда нужно остановить краулинг)
      */
-    void crawlSite(String baseUrl, Consumer<String> pageCallback, Supplier<Boolean> isActive);
+    default void crawlSite(SiteConfig siteConfig, Consumer<CrawledPage> pageCallback, Supplier<Boolean> isActive) {
+        crawlSite(siteConfig, url -> null, pageCallback, isActive);
+    }
+
+    /**
+     * Повторный обход: для страниц, известных по прошлой индексации, отправляется условный GET.
+     * На ответ 304 callback получает страницу без тела и документа ({@link CrawledPage#isNotModified()});
+     * если callback подставит в неё document (например, разобранную сохранённую копию),
+     * ссылки будут взяты из него, иначе ссылки этой страницы не обходятся.
+     *
+     * @param validators URL -> ETag и Last-Modified прошлого ответа, null для новых страниц
+     */
+    default void crawlSite(SiteConfig siteConfig, Function<String, PageValidators> validators,
+                           Consumer<CrawledPage> pageCallback, Supplier<Boolean> isActive) {
+        crawlSite(siteConfig, newFrontier(siteConfig, null), validators, pageCallback, isActive);
+    }
+
+    /**
+     * Новая граница обхода сайта с главной страницей в очереди.
+     *
+     * @param journal куда сообщать об изменениях границы (null — не сохранять)
+     */
+    CrawlFrontier newFrontier(SiteConfig siteConfig, CrawlFrontier.Journal journal);
+
+    /**
+     * Обход с заданной границей: новой (с главной страницей в очереди, возможно с журналом
+     * для сохранения) или восстановленной после прерванного обхода.
+     * Обход закончен полностью, если после возврата frontier.isExhausted().
+     */
+    default void crawlSite(SiteConfig siteConfig, CrawlFrontier frontier, Function<String, PageValidators> validators,
+                           Consumer<CrawledPage> pageCallback, Supplier<Boolean> isActive) {
+        crawlSite(siteConfig, frontier, validators, pageCallback, (url, error) -> {
+        }, isActive);
+    }
+
+    /**
+     * То же, с получателем неудачных страниц: URL и ошибка загрузки или обработки
+     * (для ответов 4xx/5xx — {@link org.jsoup.HttpStatusException} с кодом ответа).
+     * Ссылки неудачной страницы не обходятся.
+     */
+    void crawlSite(SiteConfig siteConfig, CrawlFrontier frontier, Function<String, PageValidators> validators,
+                   Consumer<CrawledPage> pageCallback, BiConsumer<String, Exception> failureCallback,
+                   Supplier<Boolean> isActive);
+
+    /**
+     * Загружает одну страницу тем же способом, что и при обходе сайта.
+     *
+     * @param url адрес страницы
+     * @return код ответа, HTML и разобранный документ
+     */
+    default CrawledPage fetchPage(String url) throws IOException {
+        return fetchPage(url, null);
+    }
+
+    /**
+     * Условный GET: с заголовками If-None-Match / If-Modified-Since из validators (если не null).
+     *
+     * @return страница, либо ответ 304 без тела
+     */
+    CrawledPage fetchPage(String url, PageValidators validators) throws IOException;
 }
@@ -1,5 +1,6 @@
 package searchengine.services;
 import org.springframework.scheduling.annotation.Async;
+import searchengine.dto.crawler.CrawledPage;
 import searchengine.dto.statistics.IndexingStatusResponse;
 import searchengine.model.Site;
 
@@ -30,11 +31,19 @@ public interface IndexingService {
     void indexSite(String url);
 
     /**
-     * Индексирует одну конкретную страницу по URL.
+     * Индексирует одну конкретную страницу по URL (страница загружается заново).
      *
      * @param url адрес страницы для индексации
      */
     void indexPage(String pageUrl, Site site);
+
+    /**
+     * Индексирует уже загруженную страницу (например, полученную от краулера).
+     *
+     * @param page загруженная страница
+     * @param site сайт, которому принадлежит страница
+     */
+    void indexPage(CrawledPage page, Site site);
 }
 
 
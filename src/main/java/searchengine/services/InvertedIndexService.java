@@ -0,0 +1,50 @@
+package searchengine.services;
+
+import searchengine.index.PageScores;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Инвертированный индекс: id леммы -> отсортированные id страниц и их rank.
+ * Хранится в сегментах на диске, отображённых в память, и в куче для страниц,
+ * записанных после последнего сброса; дополняется индексатором по мере записи страниц.
+ */
+public interface InvertedIndexService {
+    /**
+     * @return true, когда индекс загружен и им можно отвечать на запросы
+     */
+    boolean isReady();
+
+    /**
+     * Добавляет страницу в списки её лемм.
+     *
+     * @param siteId сайт страницы
+     * @param pageId id страницы
+     * @param ranks  id леммы -> rank
+     */
+    void addPage(int siteId, int pageId, Map<Integer, Float> ranks);
+
+    /**
+     * Удаляет из индекса все леммы сайта.
+     */
+    void removeSite(int siteId);
+
+    /**
+     * Исключает страницы сайта из поиска (страницы удалены или заменены новыми).
+     */
+    void removePages(int siteId, Collection<Integer> pageIds);
+
+    /**
+     * Записывает накопленные в памяти страницы сайта в сегмент на диске (асинхронно).
+     */
+    void flushSite(int siteId);
+
+    /**
+     * Находит страницы, содержащие все переданные леммы, и их абсолютную релевантность.
+     *
+     * @param siteId   сайт
+     * @param lemmaIds id лемм этого сайта
+     */
+    PageScores findPages(int siteId, Collection<Integer> lemmaIds);
+}
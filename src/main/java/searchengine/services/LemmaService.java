@@ -2,6 +2,8 @@ package searchengine.services;
 
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Map;
 
 /**
@@ -15,4 +17,11 @@ public interface LemmaService {
      * @return Map<лемма, количество вхождений>
      */
     Map<String, Integer> extractLemmas(String text);
+
+    /**
+     * То же для потока символов: текст читается порциями и не собирается в одну строку.
+     * @param reader источник текста (не закрывается)
+     * @return Map<лемма, количество вхождений>
+     */
+    Map<String, Integer> extractLemmas(Reader reader) throws IOException;
 }
@@ -4,4 +4,7 @@ import searchengine.dto.statistics.StatisticsResponse;
 
 public interface StatisticsService {
     StatisticsResponse getStatistics();
+
+    /** Точно пересчитывает счётчики страниц и лемм всех сайтов и возвращает обновлённую статистику */
+    StatisticsResponse recount();
 }
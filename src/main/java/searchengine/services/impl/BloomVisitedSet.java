@@ -0,0 +1,92 @@
+package searchengine.services.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Масштабируемый фильтр Блума (Almeida et al., 2007): когда текущий фильтр заполнен до своей ёмкости,
+ * добавляется следующий вдвое большей ёмкости с вдвое меньшей долей ложных срабатываний,
+ * так что общая доля не превышает falsePositiveRate при любом числе URL.
+ * Позиции битов — двойное хеширование 64-битного отпечатка URL.
+ */
+class BloomVisitedSet implements VisitedSet {
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final List<Filter> filters = new ArrayList<>();
+    // доля ложных срабатываний первого фильтра; у следующих p/4, p/8, ... — в сумме не больше 2 * firstRate
+    private final double firstRate;
+    private long size;
+
+    /** Один фильтр серии: ёмкость capacity URL при доле ложных срабатываний p */
+    private static final class Filter {
+        final long[] bits;
+        final long bitCount;
+        final int hashes;
+        final long capacity;
+        long count;
+
+        Filter(long capacity, double p) {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(p) / LN2_SQUARED);
+            this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64)];
+            this.bitCount = (long) bits.length * 64;
+            this.hashes = Math.max(1, (int) Math.round(-Math.log(p) / Math.log(2)));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+    }
+
+    BloomVisitedSet(int expected, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("visited-false-positive-rate must be in (0, 1): " + falsePositiveRate);
+        }
+        firstRate = falsePositiveRate / 2;
+        filters.add(new Filter(expected, firstRate));
+    }
+
+    @Override
+    public synchronized boolean addFingerprint(long fingerprint) {
+        long h1 = fingerprint;
+        // второй хеш — старшая половина отпечатка, нечётный, чтобы шаг не вырождался
+        long h2 = (h1 >>> 32 | h1 << 32) | 1;
+        for (Filter filter : filters) {
+            if (filter.mightContain(h1, h2)) {
+                return false;
+            }
+        }
+        Filter last = filters.get(filters.size() - 1);
+        if (last.count >= last.capacity) {
+            last = new Filter(last.capacity * 2, firstRate / (1L << Math.min(filters.size(), 62)));
+            filters.add(last);
+        }
+        last.put(h1, h2);
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryBytes() {
+        return filters.stream().mapToLong(f -> (long) f.bits.length * Long.BYTES).sum();
+    }
+}
@@ -0,0 +1,99 @@
+package searchengine.services.impl;
+
+import searchengine.dto.crawler.FrontierEntry;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Граница обхода одного сайта, общая для всех потоков краулера:
+ * очередь URL на загрузку и множество уже встреченных URL ({@link VisitedSet}).
+ * Обход закончен, когда не осталось ни URL в очереди, ни страниц в обработке.
+ * Если задан {@link Journal}, новые URL и обработанные страницы передаются в него,
+ * чтобы прерванный обход можно было продолжить ({@link #restoreVisited}, {@link #restoreQueued}).
+ */
+public class CrawlFrontier {
+    /** Получатель изменений границы; вызывается из потоков краулера */
+    public interface Journal {
+        /** URL впервые поставлен в очередь */
+        void queued(FrontierEntry entry);
+
+        /** Страница загружена и обработана, её ссылки уже поставлены в очередь */
+        void done(FrontierEntry entry);
+    }
+
+    private final BlockingQueue<FrontierEntry> queue = new LinkedBlockingQueue<>();
+    private final VisitedSet visited;
+    // URL в очереди + страницы, которые сейчас обрабатываются
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Journal journal;
+
+    public CrawlFrontier(VisitedSet visited, Journal journal) {
+        this.visited = visited;
+        this.journal = journal;
+    }
+
+    /** Восстановление прерванного обхода: обработанный URL по его отпечатку (журнал не пополняется) */
+    public void restoreVisited(long fingerprint) {
+        visited.addFingerprint(fingerprint);
+    }
+
+    /** Восстановление прерванного обхода: URL остался необработанным */
+    public void restoreQueued(FrontierEntry entry) {
+        visited.add(entry.url());
+        pending.incrementAndGet();
+        queue.add(entry);
+    }
+
+    /**
+     * Ставит URL в очередь, если он ещё не встречался.
+     * @return true, если URL новый
+     */
+    public boolean offer(String url, int depth) {
+        if (!visited.add(url)) {
+            return false;
+        }
+        FrontierEntry entry = new FrontierEntry(url, depth);
+        if (journal != null) {
+            journal.queued(entry);
+        }
+        pending.incrementAndGet();
+        queue.add(entry);
+        return true;
+    }
+
+    /**
+     * Забирает следующий URL; null, если за timeoutMs очередь так и осталась пустой.
+     * После обработки страницы обязательно вызвать {@link #done}.
+     */
+    public FrontierEntry poll(long timeoutMs) throws InterruptedException {
+        return queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отмечает, что страница, полученная через poll, обработана (вместе с её ссылками).
+     *
+     * @param completed false, если обработка прервана остановкой: страница останется в сохранённой очереди
+     */
+    public void done(FrontierEntry entry, boolean completed) {
+        if (completed && journal != null) {
+            journal.done(entry);
+        }
+        pending.decrementAndGet();
+    }
+
+    /** true, когда обходить больше нечего */
+    public boolean isExhausted() {
+        return pending.get() == 0;
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    public VisitedSet visited() {
+        return visited;
+    }
+}
@@ -2,8 +2,19 @@ package searchengine.services.impl;
 
 import crawlercommons.robots.BaseRobotRules;
 import crawlercommons.robots.SimpleRobotRulesParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import searchengine.config.IndexingSettings;
+import searchengine.config.SiteConfig;
+import searchengine.dto.crawler.CrawledPage;
+import searchengine.dto.crawler.FrontierEntry;
+import searchengine.dto.crawler.PageValidators;
 import searchengine.services.CrawlerService;
 
 
@@ -11,22 +22,56 @@ import searchengine.services.CrawlerService;
 //import crawlercommons.robots.BaseRobotRules;
 //import edu.uci.ics.crawlercommons.robots.SimpleRobotRulesParser;
 //import edu.uci.ics.crawlercommons.robots.RobotstxtConfig;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
+import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URL;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Set;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class CrawlerServiceImpl implements CrawlerService {
-    public static final String USER_AGENT = "SearchEngineBot";
-    public static final int TIMEOUT_MS = 5000;//todo может быть мало
+    // Сколько поток ждёт новый URL, прежде чем снова проверить флаг остановки и конец обхода
+    private static final long POLL_TIMEOUT_MS = 200;
+    // Типы ответа, которые разбираются как HTML (тот же набор, что принимал Jsoup.connect)
+    private static final Pattern HTML_TYPE = Pattern.compile("^(text/[\\w.+-]+|application/(xml|[\\w.-]+\\+xml))\\s*(;|$)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([^\\s;\"]+)", Pattern.CASE_INSENSITIVE);
+
+    // Время (мс), раньше которого к хосту нельзя отправлять следующий запрос; общее для всех потоков
+    private final Map<String, AtomicLong> nextFetchAt = new ConcurrentHashMap<>();
+    // Очередь текущего обхода сайта для gauge crawler.queue.depth (null, пока сайт не обходится)
+    private final Map<String, AtomicReference<CrawlFrontier>> frontiers = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final PageFetcher pageFetcher;
+    private final IndexingSettings indexingSettings;
+
+    /** Всё, что нужно потокам одного обхода сайта */
+    private record SiteCrawl(SiteConfig config, UrlNormalizer normalizer, BaseRobotRules rules,
+                             CrawlFrontier frontier, AtomicLong hostSlot, Function<String, PageValidators> validators,
+                             Counter crawled, Counter failed, Counter disallowed) {
+    }
 
     /** - Метод ничего не возвращает,
      а делегирует обработку каждой найденной страницы через колбэк./*
@@ -35,73 +80,237 @@ public class CrawlerServiceImpl implements CrawlerService {
      например, создать список, а в колбэке складывать туда URL */
 
     @Override
-    public void crawlSite(String baseUrl, Consumer<String> pageCallback, Supplier<Boolean> isActive) {
-        log.info("Starting crawl for site: {}", baseUrl);
+    public void crawlSite(SiteConfig siteConfig, CrawlFrontier frontier, Function<String, PageValidators> validators,
+                          Consumer<CrawledPage> pageCallback, BiConsumer<String, Exception> failureCallback,
+                          Supplier<Boolean> isActive) {
+        String baseUrl = siteConfig.getUrl();
+        int threads = Math.max(1, siteConfig.getCrawlThreads());
+        log.info("Starting crawl for site: {} ({} threads)", baseUrl, threads);
+        ExecutorService workers = null;
+        AtomicReference<CrawlFrontier> queueGauge = null;
         try {
-            // Базовый хост для фильтрации ссылок
             URL urlObj = new URL(baseUrl);
             String hostRoot = urlObj.getProtocol() + "://" + urlObj.getHost();
 
             // Загрузка и разбор robots.txt
             String robotsTxtUrl = hostRoot + "/robots.txt";
             log.debug("Loading robots.txt from: {}", robotsTxtUrl);
-            byte[] robotsContent = Jsoup.connect(robotsTxtUrl)
-                    .ignoreContentType(true)
-                    .timeout(TIMEOUT_MS)
-                    .execute()
-                    .bodyAsBytes();
+            PageFetcher.Response robots = pageFetcher.fetch(robotsTxtUrl, Map.of());
 //            RobotstxtConfig config = new RobotstxtConfig(); похоже херню заимпортил
             SimpleRobotRulesParser parser = new SimpleRobotRulesParser();
-            BaseRobotRules rules = parser.parseContent(
-                    robotsTxtUrl,
-                    robotsContent,
-                    "text/plain",
-                    USER_AGENT);
-
-            // Очередь для BFS и набор посещённых URL
-            Queue<String> queue = new LinkedList<>();
-            Set<String> visited = new HashSet<>();
-            queue.add(baseUrl);
-            visited.add(baseUrl);
-
-            // Основной цикл краулинга
-            while (!queue.isEmpty() && isActive.get()) {
-                String currentUrl = queue.poll();
-                // Пропустить, если запрещено robots.txt
-                if (!rules.isAllowed(currentUrl)){
-                    log.debug("URL disallowed by robots.txt, skipping: {}", currentUrl);
-                    continue;
-                }
+            // нет robots.txt (4xx) — обходим всё, ошибка сервера (5xx) — ничего, как предписывает RFC 9309
+            BaseRobotRules rules = robots.statusCode() / 100 == 2
+                    ? parser.parseContent(robotsTxtUrl, robots.body(), "text/plain", pageFetcher.getUserAgent())
+                    : parser.failedFetch(robots.statusCode());
 
+            // Общая для всех потоков очередь и набор посещённых URL
+            String host = urlObj.getHost();
+            queueGauge = queueGauge(host);
+            queueGauge.set(frontier);
+            SiteCrawl crawl = new SiteCrawl(siteConfig, new UrlNormalizer(baseUrl, indexingSettings), rules, frontier,
+                    nextFetchAt.computeIfAbsent(host, h -> new AtomicLong()), validators,
+                    meterRegistry.counter("crawler.pages", "site", host, "result", "crawled"),
+                    meterRegistry.counter("crawler.pages", "site", host, "result", "failed"),
+                    meterRegistry.counter("crawler.robots.disallowed", "site", host));
 
-                // Загрузка страницы
-                log.info("Crawling URL: {}", currentUrl);
-                Document doc = Jsoup.connect(currentUrl)
-                        .userAgent(USER_AGENT)
-                        .timeout(TIMEOUT_MS)
-                        .get();
-                // Передаём URL страницы для последующей обработки
-                pageCallback.accept(currentUrl);
-
-                // Извлекаем инкрементально новые ссылки
-                doc.select("a[href]")
-                        .stream()
-                        .map(link -> link.attr("abs:href"))
-                        .filter(link -> link.startsWith(hostRoot))
-                        .filter(link -> !visited.contains(link))
-                        .filter(link -> rules.isAllowed(link))
-                        .forEach(link -> {
-                            visited.add(link);
-                            queue.add(link);
-                            log.debug("Enqueued URL: {}", link);
-                        });
+            // N потоков разбирают общую очередь
+            workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("crawler-" + host + "-"));
+            for (int i = 0; i < threads; i++) {
+                workers.submit(() -> crawlWorker(crawl, pageCallback, failureCallback, isActive));
             }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
-            log.info("Finished crawl for site: {}", baseUrl);
+            VisitedSet visited = frontier.visited();
+            log.info("Finished crawl for site: {} ({} URLs seen, visited set {} KB)",
+                    baseUrl, visited.size(), visited.memoryBytes() / 1024);
+        } catch (InterruptedException e) {
+            log.info("Crawl interrupted for site: {}", baseUrl);
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             // Здесь можно логировать ошибку: URL, текст исключения и т.п.
             log.error("Error during crawling site {}: {}", baseUrl, e.getMessage(), e);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            if (queueGauge != null) {
+                queueGauge.set(null);
+            }
+        }
+
+    }
+
+    @Override
+    public CrawlFrontier newFrontier(SiteConfig siteConfig, CrawlFrontier.Journal journal) {
+        CrawlFrontier frontier = new CrawlFrontier(VisitedSet.forSite(siteConfig), journal);
+        String root = new UrlNormalizer(siteConfig.getUrl(), indexingSettings).normalize(siteConfig.getUrl());
+        frontier.offer(root, 0);
+        return frontier;
+    }
+
+    /**
+     * Цикл одного потока: берёт URL из очереди, пока обход не закончен и не пришла команда остановки
+     */
+    private void crawlWorker(SiteCrawl crawl, Consumer<CrawledPage> pageCallback,
+                             BiConsumer<String, Exception> failureCallback, Supplier<Boolean> isActive) {
+        try {
+            while (isActive.get() && !crawl.frontier().isExhausted()) {
+                FrontierEntry entry = crawl.frontier().poll(POLL_TIMEOUT_MS);
+                if (entry == null) {
+                    continue;
+                }
+                try {
+                    crawlPage(entry, crawl, pageCallback);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // Ошибка одной страницы не останавливает обход сайта
+                    crawl.failed().increment();
+                    log.warn("Failed to crawl {}: {}", entry.url(), e.getMessage());
+                    failureCallback.accept(entry.url(), e);
+                } finally {
+                    // страница, которую не успели обработать из-за остановки, остаётся в сохранённой очереди
+                    crawl.frontier().done(entry, isActive.get() && !Thread.currentThread().isInterrupted());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void crawlPage(FrontierEntry entry, SiteCrawl crawl, Consumer<CrawledPage> pageCallback) throws Exception {
+        String currentUrl = entry.url();
+        // Пропустить, если запрещено robots.txt. Ссылки проверяются здесь, а не при добавлении в очередь:
+        // очередь отбрасывает повторы, и каждый запрещённый URL учитывается в метрике один раз
+        if (!crawl.rules().isAllowed(currentUrl)){
+            crawl.disallowed().increment();
+            log.debug("URL disallowed by robots.txt, skipping: {}", currentUrl);
+            return;
         }
 
+        // Загрузка страницы
+        awaitPoliteness(crawl.hostSlot(), crawl.config().getPolitenessDelayMs());
+        log.info("Crawling URL: {}", currentUrl);
+        CrawledPage page = fetchPage(currentUrl, crawl.validators().apply(currentUrl));
+        // Передаём загруженную страницу для последующей обработки
+        pageCallback.accept(page);
+        crawl.crawled().increment();
+        if (page.getDocument() == null) {
+            // 304, а сохранённой копии для разбора ссылок нет
+            return;
+        }
+
+        // Извлекаем инкрементально новые ссылки
+        page.getDocument().select("a[href]")
+                .stream()
+                .map(link -> crawl.normalizer().normalize(link.attr("abs:href")))
+                // null — ссылка на другой сайт
+                .filter(Objects::nonNull)
+                .forEach(link -> {
+                    if (crawl.frontier().offer(link, entry.depth() + 1)) {
+                        log.debug("Enqueued URL: {}", link);
+                    }
+                });
+    }
+
+    /**
+     * Запрос идёт через общий {@link PageFetcher}; Jsoup только разбирает полученные байты.
+     * Как и раньше при Jsoup.connect, коды 4xx/5xx и не-HTML ответы считаются ошибкой загрузки.
+     */
+    @Override
+    public CrawledPage fetchPage(String url, PageValidators validators) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (validators != null && validators.etag() != null) {
+            headers.put("If-None-Match", validators.etag());
+        }
+        if (validators != null && validators.lastModified() != null) {
+            headers.put("If-Modified-Since", validators.lastModified());
+        }
+        Timer.Sample fetch = Timer.start(meterRegistry);
+        String outcome = "error";
+        PageFetcher.Response response;
+        try {
+            response = pageFetcher.fetch(url, headers);
+            if (response.statusCode() >= 400) {
+                throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), url);
+            }
+            outcome = response.statusCode() == 304 ? "not_modified" : "success";
+        } finally {
+            fetch.stop(meterRegistry.timer("crawler.fetch", "host", new URL(url).getHost(), "outcome", outcome));
+        }
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (response.statusCode() == 304) {
+            return new CrawledPage(url, 304, null, null, etag, lastModified);
+        }
+        String contentType = response.header("Content-Type");
+        if (contentType != null && !HTML_TYPE.matcher(contentType).find()) {
+            throw new UnsupportedMimeTypeException("Unhandled content type", contentType, url);
+        }
+
+        Timer.Sample parse = Timer.start(meterRegistry);
+        // кодировка из Content-Type, иначе Jsoup определит её по BOM или <meta charset>;
+        // базовый URI — адрес после редиректов, от него считаются abs:href
+        Document document = Jsoup.parse(new ByteArrayInputStream(response.body()), charsetOf(contentType),
+                response.uri().toString());
+        parse.stop(meterRegistry.timer("crawler.parse"));
+        String body = new String(response.body(), document.charset());
+        return new CrawledPage(url, response.statusCode(), body, document, etag, lastModified);
+    }
+
+    /** Параметр charset заголовка Content-Type, если он указан и известен JVM */
+    private static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher m = CHARSET.matcher(contentType);
+        if (!m.find()) {
+            return null;
+        }
+        String charset = m.group(1).trim();
+        return Charset.isSupported(charset) ? charset : null;
+    }
+
+    /**
+     * Gauge длины очереди и памяти множества встреченных URL сайта регистрируются один раз,
+     * дальше в них подставляется граница текущего обхода
+     */
+    private AtomicReference<CrawlFrontier> queueGauge(String host) {
+        return frontiers.computeIfAbsent(host, h -> {
+            AtomicReference<CrawlFrontier> ref = new AtomicReference<>();
+            Gauge.builder("crawler.queue.depth", ref, r -> {
+                        CrawlFrontier frontier = r.get();
+                        return frontier == null ? 0 : frontier.queueSize();
+                    })
+                    .tag("site", h)
+                    .description("URL в очереди обхода сайта")
+                    .register(meterRegistry);
+            Gauge.builder("crawler.visited.bytes", ref, r -> {
+                        CrawlFrontier frontier = r.get();
+                        return frontier == null ? 0 : frontier.visited().memoryBytes();
+                    })
+                    .tag("site", h)
+                    .description("Память множества встреченных URL сайта")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            return ref;
+        });
+    }
+
+    /**
+     * Резервирует для потока ближайшее окно для запроса к хосту и ждёт его,
+     * чтобы запросы всех потоков к хосту шли не чаще, чем раз в delayMs
+     */
+    private void awaitPoliteness(AtomicLong hostSlot, long delayMs) throws InterruptedException {
+        if (delayMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long previous = hostSlot.getAndAccumulate(now, (next, current) -> Math.max(next, current) + delayMs);
+        long waitMs = Math.max(previous, now) - now;
+        if (waitMs > 0) {
+            Thread.sleep(waitMs);
+        }
     }
 }
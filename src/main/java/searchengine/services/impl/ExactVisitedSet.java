@@ -0,0 +1,47 @@
+package searchengine.services.impl;
+
+import searchengine.dto.crawler.FrontierEntry;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Строки URL в ConcurrentHashMap: точный, но самый затратный вариант.
+ * URL, восстановленные по отпечатку (их строки не сохраняются), проверяются по отдельной таблице отпечатков.
+ */
+class ExactVisitedSet implements VisitedSet {
+    // String + byte[] + узел и ячейка таблицы ConcurrentHashMap, без символов URL
+    private static final int ENTRY_OVERHEAD = 88;
+
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+    private final AtomicLong bytes = new AtomicLong();
+    private final FingerprintVisitedSet restored = new FingerprintVisitedSet(16);
+
+    @Override
+    public boolean add(String url) {
+        if (restored.size() > 0 && restored.contains(FrontierEntry.fingerprint(url))) {
+            return false;
+        }
+        if (!urls.add(url)) {
+            return false;
+        }
+        bytes.addAndGet(ENTRY_OVERHEAD + url.length());
+        return true;
+    }
+
+    @Override
+    public boolean addFingerprint(long fingerprint) {
+        return restored.addFingerprint(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        return urls.size() + restored.size();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return bytes.get() + restored.memoryBytes();
+    }
+}
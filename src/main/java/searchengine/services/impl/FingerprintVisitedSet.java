@@ -0,0 +1,81 @@
+package searchengine.services.impl;
+
+/**
+ * 64-битные отпечатки URL в массиве long с открытой адресацией (линейное пробирование).
+ * Таблица удваивается при заполнении больше чем на 2/3, то есть на URL уходит 12–24 байта.
+ */
+class FingerprintVisitedSet implements VisitedSet {
+    // 0 обозначает пустую ячейку; отпечаток 0 хранится как EMPTY_SUBSTITUTE
+    private static final long EMPTY_SUBSTITUTE = 1;
+
+    private long[] table;
+    private int size;
+
+    FingerprintVisitedSet(int expected) {
+        table = new long[Integer.highestOneBit(Math.max(16, expected * 3 / 2 - 1)) << 1];
+    }
+
+    @Override
+    public synchronized boolean addFingerprint(long fingerprint) {
+        if (fingerprint == 0) {
+            fingerprint = EMPTY_SUBSTITUTE;
+        }
+        if (!insert(table, fingerprint)) {
+            return false;
+        }
+        if (++size * 3L > table.length * 2L) {
+            grow();
+        }
+        return true;
+    }
+
+    synchronized boolean contains(long fingerprint) {
+        if (fingerprint == 0) {
+            fingerprint = EMPTY_SUBSTITUTE;
+        }
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        // отпечаток уже перемешан, младшие биты годятся как адрес
+        for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+            if (table[i] == fingerprint) {
+                return false;
+            }
+        }
+    }
+
+    private void grow() {
+        if (table.length >= 1 << 30) {
+            throw new IllegalStateException("Visited set is full: " + size + " URLs");
+        }
+        long[] bigger = new long[table.length << 1];
+        for (long fingerprint : table) {
+            if (fingerprint != 0) {
+                insert(bigger, fingerprint);
+            }
+        }
+        table = bigger;
+    }
+}
@@ -0,0 +1,77 @@
+package searchengine.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.crawler.FrontierEntry;
+import searchengine.repository.FrontierJdbcRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сохраняет границу обхода сайта в frontier_url пачками по flushEvery изменений.
+ * Новые URL и отметки об обработке копятся в одном порядке и сбрасываются вместе
+ * (сначала URL, потом отметки), поэтому страница не может оказаться обработанной
+ * в БД раньше, чем туда попали найденные на ней ссылки. После сбоя теряется не больше
+ * последней пачки: эти страницы будут загружены повторно.
+ */
+@Slf4j
+class FrontierJournal implements CrawlFrontier.Journal {
+    private final FrontierJdbcRepository repository;
+    private final int siteId;
+    private final int flushEvery;
+    private final Object writeLock = new Object();
+
+    private List<FrontierEntry> queued = new ArrayList<>();
+    private List<String> done = new ArrayList<>();
+
+    FrontierJournal(FrontierJdbcRepository repository, int siteId, int flushEvery) {
+        this.repository = repository;
+        this.siteId = siteId;
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    @Override
+    public void queued(FrontierEntry entry) {
+        boolean full;
+        synchronized (this) {
+            queued.add(entry);
+            full = queued.size() + done.size() >= flushEvery;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    @Override
+    public void done(FrontierEntry entry) {
+        boolean full;
+        synchronized (this) {
+            done.add(entry.url());
+            full = queued.size() + done.size() >= flushEvery;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /** Сбрасывает накопленное (также в конце или при остановке обхода) */
+    public void flush() {
+        // пачки пишутся строго в порядке набора, чтобы отметки не обогнали URL из предыдущей пачки
+        synchronized (writeLock) {
+            List<FrontierEntry> queuedBatch;
+            List<String> doneBatch;
+            synchronized (this) {
+                if (queued.isEmpty() && done.isEmpty()) {
+                    return;
+                }
+                queuedBatch = queued;
+                doneBatch = done;
+                queued = new ArrayList<>();
+                done = new ArrayList<>();
+            }
+            repository.insertQueued(siteId, queuedBatch);
+            repository.markDone(siteId, doneBatch);
+            log.debug("Frontier of site id={} saved: {} queued, {} done", siteId, queuedBatch.size(), doneBatch.size());
+        }
+    }
+}
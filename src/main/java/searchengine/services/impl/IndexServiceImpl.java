@@ -1,28 +1,59 @@
 package searchengine.services.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.IndexingSettings;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
-import searchengine.model.Lemma;
+import searchengine.dto.crawler.CrawledPage;
+import searchengine.dto.crawler.PageValidators;
+import searchengine.dto.indexing.PageState;
+import searchengine.index.SimHash;
 import searchengine.model.Page;
-import searchengine.model.Index;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.repository.FrontierJdbcRepository;
+import searchengine.repository.IndexJdbcRepository;
+import searchengine.repository.LemmaJdbcRepository;
+import searchengine.repository.PageArchive;
+import searchengine.repository.PageJdbcRepository;
 import searchengine.repository.PageRepository;
+import searchengine.repository.PostgresBulkLoader;
+import searchengine.repository.SiteJdbcRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.services.IndexingService;
+import searchengine.services.InvertedIndexService;
 
-
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Сервис запускает индексацию сайтов из конфига или по одному URL
@@ -35,96 +66,72 @@ public class IndexServiceImpl implements IndexingService {
     private final LemmaServiceImpl lemmaService;             // отвечает за извлечение лемм
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PageJdbcRepository pageJdbcRepository;
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final LemmaJdbcRepository lemmaJdbcRepository;
+    private final SiteJdbcRepository siteJdbcRepository;
+    private final FrontierJdbcRepository frontierJdbcRepository;
+    private final SiteStatsTracker siteStatsTracker;         // счётчики страниц и лемм для статистики
+    private final PageArchive pageArchive;
+    private final NearDuplicateDetector nearDuplicateDetector;   // SimHash уже проиндексированных страниц
+    private final LemmaDictionary lemmaDictionary;       // id лемм сайта и накопленные частоты
+    private final PostgresBulkLoader bulkLoader;         // COPY-загрузка при полной переиндексации
+    private final InvertedIndexService invertedIndexService;
+    private final SearchResultCache searchResultCache;   // сбрасываем при изменении индекса
     private final SitesList sitesList;                   // настройки из application.yml
+    private final IndexingSettings indexingSettings;     // параметры индексации (параллельность и т.п.)
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;           // таймеры indexing.lemmatize / indexing.persist
+
+    // Сколько пропавших страниц удаляется за одну транзакцию
+    private static final int REMOVE_CHUNK = 1000;
+    // сколько новый запуск ждёт остановки потоков предыдущего
+    private static final long PREVIOUS_RUN_WAIT_SECONDS = 30;
 
-    // Флаг, разрешающий остановку индексации
+    // Флаг, показывающий, что идёт индексация
     private volatile boolean indexing = false;
+    // Пул потоков текущего запуска (по одному потоку на сайт) и его флаг продолжения работы
+    private ExecutorService siteExecutor;
+    private AtomicBoolean runActive = new AtomicBoolean(false);
+    // Открытые bulk-load сессии по id сайта (только при indexing-settings.bulk-load)
+    private final Map<Integer, PostgresBulkLoader.Session> bulkSessions = new ConcurrentHashMap<>();
 
     /**
-     * Запускает полную индексацию всех сайтов из конфига
+     * Запускает полную индексацию всех сайтов из конфига.
+     * Сайты обходятся параллельно, не более maxParallelSites одновременно;
+     * метод не ждёт окончания обхода.
      */
     @Override
-    @Transactional
     public void startIndexing() {
-        indexing = true;
-        log.info("Start indexing for all configured sites (count={})", sitesList.getSites().size());
-
-        for (SiteConfig cfg : sitesList.getSites()) {
-            String url = cfg.getUrl();
-            String name = cfg.getName();
-            Site site = null;
-            try {
-                log.info("Preparing to index site '{}' with name '{}'", url, name);
-
-                // 1) Удаляем из БД все данные по сайту (pages, lemmas, индексы и сам site)
-                siteRepository.findByUrl(url).ifPresent(existing -> {
-                    log.debug("Clearing existing data for site id={}, url={}", existing.getId(), url);
-                    pageRepository.deleteAllBySite(existing);
-                    lemmaRepository.deleteAllBySite(existing);
-                    indexRepository.deleteAllByPage_Site(existing);
-                    siteRepository.delete(existing);
-                });
-
-                // 2) Создаём новую запись в таблице site со статусом INDEXING
-                site = Site.builder()
-                        .url(url)
-                        .name(name)
-                        .status(SiteStatus.INDEXING)
-                        .statusTime(LocalDateTime.now())
-                        .lastError(null)
-                        .build();
-                site = siteRepository.save(site);
-                log.info("Site record created (id={}), status INDEXING", site.getId());
-
-                // 3) Краулим все страницы: для каждой вызываем indexPage(...)
-                Site finalSite = site;
-                crawlerService.crawlSite(url,
-                        pageUrl -> {
-                            // индексируем каждую страницу
-                            indexPage(pageUrl, finalSite);
-                        },
-                        () -> indexing  // проверка флага на остановку
-                );
-
-                // 4) После обхода обновляем статус на INDEXED
-                site.setStatus(SiteStatus.INDEXED);
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-                log.info("Indexing completed successfully for site id={}", site.getId());
-
-            } catch (Exception ex) {
-                // При любой ошибке меняем статус на FAILED и сохраняем текст ошибки
-                log.error("Indexing failed for site '{}': {}", url, ex.getMessage(), ex);
-                if (site != null) {
-                    site.setStatus(SiteStatus.FAILED);
-                    site.setLastError(ex.getMessage());
-                    site.setStatusTime(LocalDateTime.now());
-                    siteRepository.save(site);
-                }
-            }
-        }
-
-        indexing = false;
-        log.info("Finished indexing all sites");
+        startRun(sitesList.getSites());
     }
 
     /**
-     * Останавливает текущую индексацию (прерывает crawlSite через флаг)
+     * Останавливает текущую индексацию: снимает флаг запуска, прерывает потоки сайтов
+     * и ждёт их завершения. Поток, увидевший снятый флаг, сам помечает свой сайт как FAILED;
+     * здесь помечаются сайты, оставшиеся в INDEXING без потока (например, после падения приложения).
+     * Пока потоки ещё пишут страницы, статусы не трогаем.
      */
     @Override
-    @Transactional
     public void stopIndexing() {
-        indexing = false;
+        ExecutorService executor;
+        synchronized (this) {
+            indexing = false;
+            runActive.set(false);
+            executor = siteExecutor;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
         log.info("Indexing stop requested");
+        if (executor != null && !awaitStopped(executor)) {
+            log.warn("Site threads did not stop within {} s, they will mark their sites themselves", PREVIOUS_RUN_WAIT_SECONDS);
+            return;
+        }
 
         List<Site> running = siteRepository.findByStatus(SiteStatus.INDEXING);
         for (Site site : running) {
-            site.setStatus(SiteStatus.FAILED);
-            site.setLastError("Индексация остановлена пользователем");
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
+            markStopped(site);
             log.info("Site id={} marked FAILED because indexing was stopped", site.getId());
         }
     }
@@ -138,7 +145,7 @@ public class IndexServiceImpl implements IndexingService {
     }
 
     /**
-     * Индексирует один сайт по его URL (берем конфиг, затем почти тот же процесс что в startIndexing)
+     * Индексирует один сайт по его URL (берем конфиг и запускаем тот же процесс, что в startIndexing)
      */
     @Override
     public void indexSite(String url) {
@@ -149,78 +156,658 @@ public class IndexServiceImpl implements IndexingService {
                 .orElseThrow(() -> new IllegalArgumentException("Unknown site: " + url));
 
         log.info("Indexing single site: {}", url);
-        // Вызов общей логики, но только для одного сайта
-        startIndexing();  // можно вынести в приватный метод doIndexSingleSite(cfg)
+        startRun(List.of(cfg));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            runActive.set(false);
+            if (siteExecutor != null) {
+                siteExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Раздаёт сайты пулу потоков. У каждого запуска свой флаг активности,
+     * поэтому потоки остановленного запуска не продолжат работу после нового старта.
+     * Новый запуск ждёт, пока потоки предыдущего завершатся: иначе он удалил бы сайт,
+     * статус которого старый поток ещё запишет.
+     */
+    private void startRun(List<SiteConfig> sites) {
+        awaitPreviousRun();
+        synchronized (this) {
+            startSites(sites);
+        }
+    }
+
+    /** Ждёт завершения потоков предыдущего запуска (вне монитора: им нужен finishRun) */
+    private void awaitPreviousRun() {
+        ExecutorService previous;
+        synchronized (this) {
+            if (indexing) {
+                return;
+            }
+            previous = siteExecutor;
+        }
+        if (previous != null && !awaitStopped(previous)) {
+            throw new IllegalStateException("Предыдущая индексация ещё не остановилась, повторите запуск позже");
+        }
+    }
+
+    /** Ждёт завершения потоков запуска не дольше PREVIOUS_RUN_WAIT_SECONDS; false — не дождались */
+    private static boolean awaitStopped(ExecutorService executor) {
+        try {
+            return executor.awaitTermination(PREVIOUS_RUN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for indexing threads to stop", e);
+        }
+    }
+
+    private void startSites(List<SiteConfig> sites) {
+        if (indexing) {
+            log.warn("Indexing is already running, start request ignored");
+            return;
+        }
+        int poolSize = Math.max(1, Math.min(indexingSettings.getMaxParallelSites(), sites.size()));
+        log.info("Start indexing for {} site(s), up to {} in parallel", sites.size(), poolSize);
+
+        AtomicBoolean active = new AtomicBoolean(true);
+        AtomicInteger remaining = new AtomicInteger(sites.size());
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("site-indexer-"));
+        indexing = true;
+        runActive = active;
+        searchResultCache.invalidateAll();
+        siteExecutor = executor;
+
+        for (SiteConfig cfg : sites) {
+            executor.submit(() -> {
+                try {
+                    if (active.get()) {
+                        indexSiteTask(cfg, active);
+                    }
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        finishRun(active);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private synchronized void finishRun(AtomicBoolean active) {
+        if (runActive == active) {
+            indexing = false;
+            active.set(false);
+            log.info("Finished indexing all sites");
+        }
+    }
+
+    /**
+     * Полная переиндексация одного сайта (или инкрементальная, если она включена и сайт уже есть в БД);
+     * выполняется в потоке пула siteExecutor
+     */
+    private void indexSiteTask(SiteConfig cfg, AtomicBoolean active) {
+        String url = cfg.getUrl();
+        String name = cfg.getName();
+        Site site = null;
+        try {
+            log.info("Preparing to index site '{}' with name '{}'", url, name);
+            boolean resumable = indexingSettings.isResumable() && !indexingSettings.isBulkLoad();
+            if (resumable) {
+                site = siteRepository.findByUrl(url)
+                        .filter(existing -> existing.getStatus() != SiteStatus.INDEXED)
+                        .filter(existing -> frontierJdbcRepository.hasPending(existing.getId()))
+                        .orElse(null);
+                if (site != null) {
+                    resumeSite(cfg, site, active);
+                    return;
+                }
+            }
+            if (indexingSettings.isIncremental()) {
+                site = siteRepository.findByUrl(url).orElse(null);
+                if (site != null) {
+                    recrawlSite(cfg, site, active);
+                    return;
+                }
+            }
+
+            // 1) Удаляем из БД все данные по сайту (pages, lemmas, индексы и сам site)
+            Integer purgedSiteId = transactionTemplate.execute(status ->
+                    siteRepository.findByUrl(url).map(existing -> {
+                        log.debug("Clearing existing data for site id={}, url={}", existing.getId(), url);
+                        siteJdbcRepository.purge(existing.getId());
+                        invertedIndexService.removeSite(existing.getId());
+                        return existing.getId();
+                    }).orElse(null));
+            if (purgedSiteId != null) {
+                siteStatsTracker.forget(purgedSiteId);
+                // файлы архива удаляются только после того, как строки страниц удалены окончательно
+                pageArchive.deleteSite(purgedSiteId);
+                nearDuplicateDetector.removeSite(purgedSiteId);
+            }
+            searchResultCache.invalidateSite(url);
+
+            // 2) Создаём новую запись в таблице site со статусом INDEXING
+            site = Site.builder()
+                    .url(url)
+                    .name(name)
+                    .status(SiteStatus.INDEXING)
+                    .statusTime(LocalDateTime.now())
+                    .lastError(null)
+                    .build();
+            site = siteRepository.save(site);
+            log.info("Site record created (id={}), status INDEXING", site.getId());
+
+            // 3) Краулим все страницы: для каждой вызываем indexPage(...)
+            Site finalSite = site;
+            PostgresBulkLoader.Session bulkSession = null;
+            if (indexingSettings.isBulkLoad()) {
+                // в индекс в памяти и в статистику страница попадает только после фиксации её строк
+                bulkSession = bulkLoader.open(site.getId(), (pageId, ranks, newLemmas) -> {
+                    invertedIndexService.addPage(finalSite.getId(), pageId, ranks);
+                    siteStatsTracker.add(finalSite.getId(), 1, newLemmas);
+                });
+                bulkSessions.put(site.getId(), bulkSession);
+            } else {
+                lemmaDictionary.open(site);
+            }
+            // после сбоя COPY сессия не примет ни одной страницы: обход сайта прекращаем
+            PostgresBulkLoader.Session failFast = bulkSession;
+            Supplier<Boolean> crawlActive = () -> active.get() && (failFast == null || !failFast.isFailed());
+            // при resumable граница обхода сохраняется, чтобы прерванный обход можно было продолжить
+            FrontierJournal journal = resumable
+                    ? new FrontierJournal(frontierJdbcRepository, site.getId(), indexingSettings.getFrontierFlushUrls())
+                    : null;
+            CrawlFrontier frontier = crawlerService.newFrontier(cfg, journal);
+            try {
+                crawlerService.crawlSite(cfg, frontier, pageUrl -> null,
+                        crawledPage -> {
+                            // индексируем каждую страницу, уже загруженную краулером
+                            indexPage(crawledPage, finalSite);
+                        },
+                        crawlActive  // проверка флага на остановку
+                );
+            } finally {
+                if (journal != null) {
+                    journal.flush();
+                }
+                // дописываем в БД остаток буферов и частоты лемм;
+                // если сессия bulk-load упала, finish бросит её ошибку и сайт получит статус FAILED
+                PostgresBulkLoader.Session bulk = bulkSessions.remove(site.getId());
+                try {
+                    if (bulk != null) {
+                        bulk.finish();
+                    } else {
+                        lemmaDictionary.close(site);
+                    }
+                } finally {
+                    // страницы сайта из памяти — в сегмент на диске
+                    invertedIndexService.flushSite(site.getId());
+                    siteStatsTracker.flush(site.getId());
+                    // COPY-буферы и частоты лемм попали в БД только сейчас
+                    searchResultCache.invalidateSite(url);
+                }
+            }
+
+            if (journal != null && frontier.isExhausted()) {
+                frontierJdbcRepository.deleteBySite(site.getId());
+            }
+
+            // 4) После обхода обновляем статус: INDEXED, либо FAILED, если обход прервали
+            if (!active.get()) {
+                markStopped(site);
+                log.info("Indexing stopped for site id={}", site.getId());
+                return;
+            }
+            site.setStatus(SiteStatus.INDEXED);
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+            log.info("Indexing completed successfully for site id={}", site.getId());
+
+        } catch (Exception ex) {
+            // При любой ошибке меняем статус на FAILED и сохраняем текст ошибки
+            log.error("Indexing failed for site '{}': {}", url, ex.getMessage(), ex);
+            if (site != null) {
+                site.setStatus(SiteStatus.FAILED);
+                site.setLastError(ex.getMessage());
+                site.setStatusTime(LocalDateTime.now());
+                siteRepository.save(site);
+            }
+        }
+    }
+
+    private void markStopped(Site site) {
+        site.setStatus(SiteStatus.FAILED);
+        site.setLastError("Индексация остановлена пользователем");
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+    }
+
+    /**
+     * Продолжение прерванного обхода: очередь и отпечатки обработанных URL берутся из frontier_url,
+     * уже сохранённые страницы не индексируются повторно (их ссылки всё равно обходятся).
+     * Сохранённой может оказаться лишь страница из последней несброшенной пачки журнала,
+     * поэтому она ищется в БД по пути, а не по списку всех страниц сайта в памяти.
+     * Частоты лемм сначала пересчитываются по таблице index: накопленные в памяти
+     * приращения прерванного запуска могли не дойти до БД.
+     */
+    private void resumeSite(SiteConfig cfg, Site site, AtomicBoolean active) {
+        site.setStatus(SiteStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError(null);
+        site = siteRepository.save(site);
+        lemmaJdbcRepository.recountFrequencies(site.getId());
+        // несброшенные изменения счётчиков пропали вместе с упавшим процессом
+        siteStatsTracker.recount(site.getId());
+
+        FrontierJournal journal = new FrontierJournal(frontierJdbcRepository, site.getId(), indexingSettings.getFrontierFlushUrls());
+        CrawlFrontier frontier = new CrawlFrontier(VisitedSet.forSite(cfg), journal);
+        frontierJdbcRepository.load(site.getId(), frontier::restoreVisited, frontier::restoreQueued);
+        log.info("Resuming crawl of site id={}: {} URLs queued, {} seen",
+                site.getId(), frontier.queueSize(), frontier.visited().size());
+
+        Site finalSite = site;
+        lemmaDictionary.open(site);
+        try {
+            crawlerService.crawlSite(cfg, frontier, pageUrl -> null,
+                    crawledPage -> {
+                        // страница могла быть сохранена перед сбоем, но не отмечена в границе
+                        String path = pathOf(crawledPage.getUrl());
+                        if (pageRepository.findFirstBySiteIdAndPath(finalSite.getId(), path).isEmpty()) {
+                            indexPage(crawledPage, finalSite);
+                        }
+                    },
+                    active::get);
+        } finally {
+            journal.flush();
+            lemmaDictionary.close(site);
+            invertedIndexService.flushSite(site.getId());
+            siteStatsTracker.flush(site.getId());
+            searchResultCache.invalidateSite(site.getUrl());
+        }
+
+        if (frontier.isExhausted()) {
+            frontierJdbcRepository.deleteBySite(site.getId());
+        }
+        if (!active.get()) {
+            markStopped(site);
+            log.info("Resumed indexing stopped again for site id={}", site.getId());
+            return;
+        }
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        log.info("Resumed indexing completed for site id={}", site.getId());
+    }
+
+    /**
+     * Инкрементальная переиндексация: страницы, известные с прошлого раза, запрашиваются условным GET;
+     * не изменившиеся (304 или тот же хеш текста) пропускаются, изменившиеся заменяются новой записью page
+     * с пересчётом частот лемм по разнице, новые добавляются. Страницы, до которых полностью
+     * завершившийся обход не дошёл, удаляются.
+     */
+    private void recrawlSite(SiteConfig cfg, Site site, AtomicBoolean active) {
+        site.setStatus(SiteStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError(null);
+        site = siteRepository.save(site);
+
+        Map<String, PageState> known = new HashMap<>();
+        for (PageState state : pageRepository.findBySiteId(site.getId())) {
+            known.put(state.getPath(), state);
+        }
+        // страницы с прошлого раза, которые встретились в этом обходе
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        // известные страницы, на которые сервер ответил 404 или 410
+        Set<Integer> gone = ConcurrentHashMap.newKeySet();
+        // временные сбои (таймаут, 5xx, обрыв соединения): страницы за ними могли остаться непосещёнными
+        AtomicInteger transientFailures = new AtomicInteger();
+        log.info("Incremental recrawl of site id={}, {} known pages", site.getId(), known.size());
+
+        Site finalSite = site;
+        lemmaDictionary.open(site);
+        try {
+            crawlerService.crawlSite(cfg, crawlerService.newFrontier(cfg, null),
+                    pageUrl -> {
+                        PageState state = known.get(pathOf(pageUrl));
+                        return state == null ? null : new PageValidators(state.getEtag(), state.getLastModified());
+                    },
+                    crawledPage -> recrawlPage(crawledPage, finalSite, known, seen),
+                    (pageUrl, error) -> {
+                        PageState state = known.get(pathOf(pageUrl));
+                        if (isGone(error)) {
+                            if (state != null) {
+                                gone.add(state.getId());
+                            }
+                        } else {
+                            transientFailures.incrementAndGet();
+                        }
+                    },
+                    active::get);
+        } finally {
+            lemmaDictionary.close(site);
+        }
+
+        if (active.get() && !seen.isEmpty()) {
+            List<Integer> vanished;
+            if (transientFailures.get() == 0) {
+                // обход завершён полностью и без сбоев: чего в нём не было, того на сайте больше нет.
+                // Пустой обход (сайт недоступен) ничего не удаляет
+                vanished = known.values().stream()
+                        .map(PageState::getId)
+                        .filter(id -> !seen.contains(id))
+                        .toList();
+            } else {
+                // часть сайта могла остаться за недоступными страницами: удаляем только подтверждённо пропавшие
+                vanished = List.copyOf(gone);
+                log.warn("Site id={}: {} pages failed to load, only pages answering 404/410 are removed",
+                        site.getId(), transientFailures.get());
+            }
+            removePages(site, vanished);
+            log.info("Site id={}: {} of {} known pages revisited, {} removed", site.getId(), seen.size(), known.size(), vanished.size());
+        }
+        invertedIndexService.flushSite(site.getId());
+        siteStatsTracker.flush(site.getId());
+        searchResultCache.invalidateSite(site.getUrl());
+
+        if (!active.get()) {
+            markStopped(site);
+            log.info("Incremental indexing stopped for site id={}", site.getId());
+            return;
+        }
+        site.setStatus(SiteStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        log.info("Incremental indexing completed for site id={}", site.getId());
+    }
+
+    /** Страницы больше нет на сайте: ответ 404 или 410 */
+    private static boolean isGone(Exception error) {
+        return error instanceof HttpStatusException status
+                && (status.getStatusCode() == 404 || status.getStatusCode() == 410);
+    }
+
+    /**
+     * Страница инкрементального обхода: пропускает неизменившуюся, заменяет изменившуюся, добавляет новую
+     */
+    private void recrawlPage(CrawledPage crawledPage, Site site, Map<String, PageState> known, Set<Integer> seen) {
+        String pageUrl = crawledPage.getUrl();
+        try {
+            PageState state = known.get(pathOf(pageUrl));
+            if (state != null && !seen.add(state.getId())) {
+                // тот же путь уже обработан по другому URL (например, с другими параметрами)
+                return;
+            }
+            if (crawledPage.isNotModified() && state == null) {
+                // 304 на запрос без условных заголовков (сохранённой копии по этому пути нет): запрашиваем заново
+                CrawledPage fresh = crawlerService.fetchPage(pageUrl);
+                if (fresh.isNotModified()) {
+                    throw new IOException("Unconditional request answered 304 Not Modified: " + pageUrl);
+                }
+                crawledPage.setStatusCode(fresh.getStatusCode());
+                crawledPage.setBody(fresh.getBody());
+                crawledPage.setDocument(fresh.getDocument());
+                crawledPage.setEtag(fresh.getEtag());
+                crawledPage.setLastModified(fresh.getLastModified());
+            }
+            if (crawledPage.isNotModified()) {
+                // ссылки страницы краулер возьмёт из сохранённой копии
+                String html = pageRepository.findById(state.getId()).map(pageArchive::content).orElse("");
+                crawledPage.setDocument(Jsoup.parse(html, pageUrl));
+                meterRegistry.counter("indexing.recrawl", "result", "not_modified").increment();
+                return;
+            }
+            Page page = buildPage(crawledPage, site);
+            if (state != null && page.getContentHash().equals(state.getContentHash())) {
+                if (!Objects.equals(page.getEtag(), state.getEtag()) || !Objects.equals(page.getLastModified(), state.getLastModified())) {
+                    pageJdbcRepository.updateValidators(state.getId(), page.getEtag(), page.getLastModified());
+                }
+                meterRegistry.counter("indexing.recrawl", "result", "unchanged").increment();
+                return;
+            }
+            meterRegistry.counter("indexing.recrawl", "result", state == null ? "new" : "changed").increment();
+            writePage(page, site, state == null ? null : state.getId());
+        } catch (Exception ex) {
+            log.error("Failed to reindex page '{}' for site '{}': {}", pageUrl, site.getUrl(), ex.getMessage(), ex);
+            throw new RuntimeException("Error indexing page " + pageUrl, ex);
+        }
+    }
+
+    /**
+     * Удаляет страницы вместе с их строками index и вычитает их из частот лемм
+     */
+    private void removePages(Site site, List<Integer> pageIds) {
+        for (int from = 0; from < pageIds.size(); from += REMOVE_CHUNK) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + REMOVE_CHUNK, pageIds.size()));
+            Integer deleted = transactionTemplate.execute(status -> {
+                lemmaJdbcRepository.subtractPages(chunk);
+                indexJdbcRepository.deletePagePostings(chunk);
+                return pageJdbcRepository.delete(chunk);
+            });
+            siteStatsTracker.add(site.getId(), -deleted, 0);
+            invertedIndexService.removePages(site.getId(), chunk);
+            nearDuplicateDetector.removePages(site.getId(), chunk);
+        }
+    }
+
+    /**
+     * Загружает страницу по URL и индексирует её (используется /api/indexPage).
+     * Без общей транзакции: запись страницы фиксируется своей транзакцией, и только после этого
+     * о ней узнают словарь лемм и счётчики статистики.
+     */
+    @Override
+    public void indexPage(String pageUrl, Site site) {
+        CrawledPage crawledPage;
+        try {
+            // Загружаем страницу тем же HTTP-клиентом, что и при обходе
+            crawledPage = crawlerService.fetchPage(pageUrl);
+        } catch (Exception ex) {
+            log.error("Failed to fetch page '{}' for site '{}': {}", pageUrl, site.getUrl(), ex.getMessage(), ex);
+            throw new RuntimeException("Error indexing page " + pageUrl, ex);
+        }
+        try {
+            Page page = buildPage(crawledPage, site);
+            // уже проиндексированная страница заменяется: иначе её новая версия оказалась бы копией самой себя
+            Integer replacedPageId = pageRepository.findFirstBySiteIdAndPath(site.getId(), page.getPath())
+                    .map(PageState::getId)
+                    .orElse(null);
+            writePage(page, site, replacedPageId);
+        } catch (Exception ex) {
+            log.error("Failed to index page '{}' for site '{}': {}", pageUrl, site.getUrl(), ex.getMessage(), ex);
+            throw new RuntimeException("Error indexing page " + pageUrl, ex);
+        }
     }
 
     /**
-     * Индексирует одну страницу:
+     * Индексирует одну уже загруженную страницу:
      * - сохраняет Page,
      * - извлекает леммы и увеличивает их частоту,
      * - сохраняет связку Page↔Lemma в Index,
      * - обновляет status_time в таблице site.
      */
     @Override
-    @Transactional
-    public void indexPage(String pageUrl, Site site) {
+    public void indexPage(CrawledPage crawledPage, Site site) {
+        String pageUrl = crawledPage.getUrl();
         log.debug("Indexing page '{}' for site id={}", pageUrl, site.getId());
         try {
-            // Загружаем документ через Jsoup
-            Document doc = Jsoup.connect(pageUrl)
-                    .userAgent(CrawlerServiceImpl.USER_AGENT)
-                    .timeout(CrawlerServiceImpl.TIMEOUT_MS)
-                    .get();
-
-            // Сохраняем или обновляем запись Page
-            Page page = Page.builder()
-                    .site(site)
-                    .path(new URL(pageUrl).getPath())
-                    .code(doc.connection().response().statusCode())
-                    .content(doc.html())
-                    .build();
-            page = pageRepository.save(page);
-            log.trace("Saved Page id={} path={}", page.getId(), page.getPath());
-
-            // Извлекаем леммы и сохраняем их частоты
-            Page finalPage = page;
-            String pageText = doc.text();
-            lemmaService.extractLemmas(pageText).forEach((lemmaStr, freq) -> {
-                // 1) Находим или создаём Lemma
-                Lemma lemma = lemmaRepository
-                        .findByLemmaAndSite(lemmaStr, site)
-                        .orElseGet(() -> {
-                            log.trace("Creating new Lemma '{}' for site id={}", lemmaStr, site.getId());
-                            return lemmaRepository.save(
-                                    Lemma.builder()
-                                            .site(site)
-                                            .lemma(lemmaStr)
-                                            .frequency(0)
-                                            .build()
-                            );
-                        });
-
-                // 2) Обновляем общую частоту леммы по сайту
-                lemma.setFrequency(lemma.getFrequency() + 1);
-                lemmaRepository.save(lemma);
-                log.trace("Updated Lemma id={} freq={}", lemma.getId(), lemma.getFrequency());
-
-                // 3) Сохраняем запись в индекс (связь page–lemma)
-                indexRepository.save(Index.builder()
-                        .page(finalPage)
-                        .lemma(lemma)
-                        .rank((float) freq)
-                        .build());
-                log.trace("Indexed Lemma id={} in Page id={} with rank={}", lemma.getId(), finalPage.getId(), freq);
-            });
-
-            // Обновляем время последней активности индексации для сайта
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
-
+            writePage(buildPage(crawledPage, site), site, null);
         } catch (Exception ex) {
             log.error("Failed to index page '{}' for site '{}': {}", pageUrl, site.getUrl(), ex.getMessage(), ex);
             // пробрасываем, чтобы внешняя логика выставила статус FAILED
             throw new RuntimeException("Error indexing page " + pageUrl, ex);
         }
     }
+
+    /**
+     * Запись Page по загруженной странице; заголовок и текст сохраняем сразу, чтобы поиск не разбирал HTML
+     */
+    private Page buildPage(CrawledPage crawledPage, Site site) throws MalformedURLException {
+        Document doc = crawledPage.getDocument();
+        String title = doc.title();
+        String pageText = doc.text();
+        return Page.builder()
+                .site(site)
+                .path(new URL(crawledPage.getUrl()).getPath())
+                .code(crawledPage.getStatusCode())
+                .content(crawledPage.getBody())
+                .title(title)
+                .text(pageText)
+                .textLength(pageText.length())
+                .etag(crawledPage.getEtag())
+                .lastModified(crawledPage.getLastModified())
+                .contentHash(contentHash(title, pageText))
+                .build();
+    }
+
+    /**
+     * Извлекает леммы страницы и записывает её: через COPY в режиме bulk-load, заменой прежней
+     * записи replacedPageId (инкрементальный обход) или обычным INSERT.
+     * Почти точная копия уже проиндексированной страницы сайта (по SimHash лемм) не записывается.
+     */
+    private void writePage(Page page, Site site, Integer replacedPageId) {
+        // Извлекаем леммы
+        Timer.Sample lemmatize = Timer.start(meterRegistry);
+        Map<String, Integer> lemmas = lemmaService.extractLemmas(page.getText());
+        lemmatize.stop(meterRegistry.timer("indexing.lemmatize"));
+
+        if (replacedPageId != null) {
+            // прежняя версия страницы не должна считаться её копией
+            nearDuplicateDetector.removePages(site.getId(), List.of(replacedPageId));
+        }
+        Long simHash = null;
+        if (nearDuplicateDetector.applies(lemmas.size())) {
+            simHash = SimHash.of(lemmas);
+            Integer original = nearDuplicateDetector.claim(site.getId(), simHash);
+            if (original != null) {
+                meterRegistry.counter("indexing.duplicates").increment();
+                log.debug("Page '{}' is a near-duplicate of page id={}, not indexed", page.getPath(), original);
+                if (replacedPageId != null) {
+                    // изменившаяся страница стала копией другой
+                    removePages(site, List.of(replacedPageId));
+                }
+                return;
+            }
+            page.setSimHash(simHash);
+        }
+        if (pageArchive.isEnabled()) {
+            pageArchive.store(page);
+        }
+
+        Timer.Sample persist = Timer.start(meterRegistry);
+        PostgresBulkLoader.Session bulk = bulkSessions.get(site.getId());
+        String mode;
+        try {
+            if (bulk != null) {
+                // полная переиндексация в режиме bulk-load: строки уйдут в БД через COPY,
+                // в индекс в памяти — после фиксации сброса
+                bulk.addPage(page, lemmas);
+                mode = "bulk";
+            } else if (replacedPageId != null) {
+                replacePage(replacedPageId, page, lemmas, site);
+                mode = "replace";
+            } else {
+                savePage(page, lemmas, site);
+                mode = "jdbc";
+            }
+        } catch (RuntimeException e) {
+            if (simHash != null) {
+                nearDuplicateDetector.release(site.getId(), simHash);
+            }
+            throw e;
+        }
+        if (simHash != null) {
+            nearDuplicateDetector.assign(site.getId(), simHash, page.getId());
+        }
+        persist.stop(meterRegistry.timer("indexing.persist", "mode", mode));
+
+        // Обновляем время последней активности индексации для сайта
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        searchResultCache.invalidateSite(site.getUrl());
+    }
+
+    /**
+     * Обычный путь записи страницы: upsert частот лемм, INSERT страницы и JDBC batch строк index
+     * в одной транзакции, чтобы сбой не оставил ни страницу без строк index (продолжение обхода её бы пропустило),
+     * ни приращения частот без самой страницы. Словарь лемм узнаёт о странице только после фиксации.
+     */
+    private void savePage(Page page, Map<String, Integer> lemmas, Site site) {
+        Map<Integer, Float> ranks = new HashMap<>(lemmas.size() * 2);
+        LemmaDictionary.PageLemmas pageLemmas = transactionTemplate.execute(status -> {
+            // Увеличиваем частоты лемм одним upsert и получаем их id
+            LemmaDictionary.PageLemmas prepared = lemmaDictionary.addPage(site, lemmas.keySet());
+            lemmas.forEach((lemma, count) -> ranks.put(prepared.ids().get(lemma), (float) count));
+            pageJdbcRepository.insert(page);
+            indexJdbcRepository.insertPagePostings(page.getId(), ranks);
+            return prepared;
+        });
+        lemmaDictionary.commitPage(site, pageLemmas);
+        siteStatsTracker.add(site.getId(), 1, pageLemmas.inserted());
+        log.trace("Saved Page id={} path={}", page.getId(), page.getPath());
+        invertedIndexService.addPage(site.getId(), page.getId(), ranks);
+        log.trace("Indexed {} lemmas in Page id={}", ranks.size(), page.getId());
+    }
+
+    /**
+     * Изменившаяся страница: прежняя запись page и её строки index удаляются, новая вставляется
+     * с новым id (для индекса в памяти это удаление и добавление страницы).
+     * Частоты меняются только у лемм, которые появились на странице или пропали с неё,
+     * в той же транзакции, что и замена страницы.
+     */
+    private void replacePage(int oldPageId, Page page, Map<String, Integer> lemmas, Site site) {
+        Map<String, Integer> oldLemmas = indexJdbcRepository.findPageLemmas(oldPageId);
+        Set<String> added = new HashSet<>(lemmas.keySet());
+        added.removeAll(oldLemmas.keySet());
+        List<Integer> removed = oldLemmas.entrySet().stream()
+                .filter(e -> !lemmas.containsKey(e.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+
+        Map<Integer, Float> ranks = new HashMap<>(lemmas.size() * 2);
+        int[] deleted = {0};
+        LemmaDictionary.PageLemmas addedLemmas = transactionTemplate.execute(status -> {
+            LemmaDictionary.PageLemmas prepared = lemmaDictionary.addPage(site, added);
+            Map<String, Integer> lemmaIds = new HashMap<>(oldLemmas);
+            lemmaIds.putAll(prepared.ids());
+            lemmas.forEach((lemma, count) -> ranks.put(lemmaIds.get(lemma), (float) count));
+
+            indexJdbcRepository.deletePagePostings(List.of(oldPageId));
+            deleted[0] = pageJdbcRepository.delete(List.of(oldPageId));
+            pageJdbcRepository.insert(page);
+            indexJdbcRepository.insertPagePostings(page.getId(), ranks);
+            lemmaJdbcRepository.decrementFrequencies(removed);
+            return prepared;
+        });
+        lemmaDictionary.commitPage(site, addedLemmas);
+        siteStatsTracker.add(site.getId(), 1 - deleted[0], addedLemmas.inserted());
+
+        invertedIndexService.removePages(site.getId(), List.of(oldPageId));
+        invertedIndexService.addPage(site.getId(), page.getId(), ranks);
+        log.debug("Page id={} replaced by id={}: +{} / -{} lemmas", oldPageId, page.getId(), added.size(), removed.size());
+    }
+
+    private static String pathOf(String url) {
+        try {
+            return new URL(url).getPath();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /** SHA-256 заголовка и текста страницы в hex */
+    private static String contentHash(String title, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(title.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
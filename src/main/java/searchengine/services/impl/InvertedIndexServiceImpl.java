@@ -0,0 +1,371 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.index.PageScores;
+import searchengine.index.PostingIntersection;
+import searchengine.index.PostingList;
+import searchengine.index.Segment;
+import searchengine.index.SegmentWriter;
+import searchengine.index.SiteIndex;
+import searchengine.services.InvertedIndexService;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Индекс хранится по сайтам: сегменты на диске (отображаются в память) плюс свежие страницы в куче.
+ * Таблица в памяти сбрасывается в новый сегмент в конце индексации сайта или при достижении
+ * segmentFlushPostings записей; когда сегментов сайта больше maxSegmentsPerSite или удалённые страницы
+ * составляют больше mergeDeletedRatio их страниц, сегменты сливаются в фоне.
+ * При старте сегменты открываются с диска, а из таблицы index дочитываются только страницы,
+ * которых в сегментах нет.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class InvertedIndexServiceImpl implements InvertedIndexService {
+    private static final int FETCH_SIZE = 10_000;
+    private static final int PAGES_PER_QUERY = 1000;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("site-(\\d+)-(\\d+)\\.seg");
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchSettings searchSettings;
+
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+    private final AtomicLong segmentSeq = new AtomicLong(System.currentTimeMillis());
+    // запись и слияние сегментов идут строго по одному
+    private final ExecutorService segmentWriter = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("segment-writer-"));
+    private volatile boolean ready = false;
+
+    /**
+     * Загружает индекс в фоне, чтобы не задерживать старт приложения;
+     * до окончания загрузки поиск идёт по БД.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!searchSettings.isInMemoryIndex()) {
+            log.info("Inverted index is disabled");
+            return;
+        }
+        Thread loader = new Thread(this::loadAll, "inverted-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        segmentWriter.shutdownNow();
+    }
+
+    private void loadAll() {
+        long started = System.currentTimeMillis();
+        try {
+            Path dir = indexDir();
+            Files.createDirectories(dir);
+            Set<Integer> siteIds = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM site", Integer.class));
+            Map<Integer, List<Path>> files = listSegmentFiles(dir, siteIds);
+
+            for (Integer siteId : siteIds) {
+                loadSite(siteId, files.getOrDefault(siteId, List.of()));
+            }
+            ready = true;
+            log.info("Inverted index loaded for {} sites in {} ms", siteIds.size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Failed to load inverted index, search will use the database: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Файлы сегментов по сайтам; недописанные файлы и сегменты удалённых сайтов удаляются */
+    private Map<Integer, List<Path>> listSegmentFiles(Path dir, Set<Integer> siteIds) throws IOException {
+        Map<Integer, List<Path>> files = new HashMap<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            for (Path path : stream.sorted().toList()) {
+                Matcher m = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (m.matches() && siteIds.contains(Integer.parseInt(m.group(1)))) {
+                    files.computeIfAbsent(Integer.parseInt(m.group(1)), id -> new ArrayList<>()).add(path);
+                    segmentSeq.accumulateAndGet(Long.parseLong(m.group(2)) + 1, Math::max);
+                } else if (m.matches() || path.getFileName().toString().endsWith(".seg.tmp")) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void loadSite(int siteId, List<Path> segmentFiles) throws IOException {
+        SiteIndex siteIndex = siteIndex(siteId);
+        List<Segment> segments = new ArrayList<>();
+        for (Path path : segmentFiles) {
+            segments.add(Segment.open(path));
+        }
+        siteIndex.addSegments(segments);
+
+        if (segments.isEmpty()) {
+            // холодный старт: читаем все строки сайта одним потоковым запросом и сразу пишем сегмент
+            long rows = streamRows("SELECT i.lemma_id, i.page_id, i.rank FROM \"index\" i " +
+                    "JOIN page p ON p.id = i.page_id WHERE p.site_id = ? ORDER BY i.lemma_id, i.page_id", siteIndex, siteId);
+            log.info("Site id={}: no segments, {} postings read from table", siteId, rows);
+        } else {
+            // страницы в сегментах сверяем со страницами в БД
+            int[] covered = segments.stream().map(Segment::pageIds).reduce(new int[0], SiteIndex::unionSorted);
+            int[] live = jdbcTemplate.queryForList("SELECT id FROM page WHERE site_id = ? ORDER BY id", Integer.class, siteId)
+                    .stream().mapToInt(Integer::intValue).toArray();
+            List<Integer> deleted = difference(covered, live);
+            List<Integer> missing = difference(live, covered);
+            siteIndex.removePages(deleted);
+            for (int from = 0; from < missing.size(); from += PAGES_PER_QUERY) {
+                List<Integer> chunk = missing.subList(from, Math.min(from + PAGES_PER_QUERY, missing.size()));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                readRows(jdbcTemplate, "SELECT lemma_id, page_id, rank FROM \"index\" WHERE page_id IN (" + placeholders + ")",
+                        siteIndex, chunk.toArray());
+            }
+            log.info("Site id={}: {} segments, {} pages replayed from table, {} deleted", siteId, segments.size(), missing.size(), deleted.size());
+        }
+        flushSite(siteId);
+    }
+
+    private long streamRows(String sql, SiteIndex siteIndex, Object... args) {
+        // PostgreSQL отдаёт результат порциями по fetchSize только внутри транзакции
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(FETCH_SIZE);
+        Long rows = transactionTemplate.execute(status -> readRows(streaming, sql, siteIndex, args));
+        return rows == null ? 0 : rows;
+    }
+
+    /** Строки (lemma_id, page_id, rank) добавляются в индекс сайта; большой объём сбрасывается в сегменты по ходу */
+    private long readRows(JdbcTemplate template, String sql, SiteIndex siteIndex, Object... args) {
+        long[] rows = {0};
+        template.query(sql, rs -> {
+            siteIndex.addPosting(rs.getInt(1), rs.getInt(2), rs.getFloat(3));
+            rows[0]++;
+            if (siteIndex.needsFlush(searchSettings.getSegmentFlushPostings())) {
+                flushSite(siteIndex.getSiteId());
+            }
+        }, args);
+        return rows[0];
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void addPage(int siteId, int pageId, Map<Integer, Float> ranks) {
+        if (!searchSettings.isInMemoryIndex()) {
+            return;
+        }
+        SiteIndex siteIndex = siteIndex(siteId);
+        siteIndex.addPage(pageId, ranks);
+        if (siteIndex.needsFlush(searchSettings.getSegmentFlushPostings())) {
+            flushSite(siteId);
+        }
+    }
+
+    @Override
+    public void removeSite(int siteId) {
+        SiteIndex removed = sites.remove(siteId);
+        if (removed != null) {
+            // через тот же поток, чтобы не пересечься с записью сегмента этого сайта
+            segmentWriter.submit(() -> removed.getSegments().forEach(s -> deleteQuietly(s.getPath())));
+        }
+    }
+
+    @Override
+    public void removePages(int siteId, Collection<Integer> pageIds) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex != null && !pageIds.isEmpty()) {
+            siteIndex.removePages(pageIds);
+            // много удалённых страниц замедляет каждый запрос: сливаем сегменты, не дожидаясь их числа
+            if (needsMerge(siteIndex)) {
+                segmentWriter.submit(() -> mergeSegments(siteIndex));
+            }
+        }
+    }
+
+    @Override
+    public void flushSite(int siteId) {
+        if (searchSettings.isInMemoryIndex()) {
+            segmentWriter.submit(() -> writeSegment(siteId));
+        }
+    }
+
+    @Override
+    public PageScores findPages(int siteId, Collection<Integer> lemmaIds) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex == null) {
+            return PageScores.EMPTY;
+        }
+        List<PostingList.Snapshot> lists = new ArrayList<>(lemmaIds.size());
+        for (Integer lemmaId : lemmaIds) {
+            PostingList.Snapshot postings = siteIndex.postings(lemmaId);
+            if (postings.size() == 0) {
+                return PageScores.EMPTY;
+            }
+            lists.add(postings);
+        }
+        return PostingIntersection.intersect(lists);
+    }
+
+    private SiteIndex siteIndex(int siteId) {
+        return sites.computeIfAbsent(siteId, SiteIndex::new);
+    }
+
+    private Path indexDir() {
+        return Paths.get(searchSettings.getIndexDir());
+    }
+
+    /** Пишет таблицу в памяти сайта в новый сегмент (в потоке segmentWriter) */
+    private void writeSegment(int siteId) {
+        SiteIndex siteIndex = sites.get(siteId);
+        SiteIndex.MemTable table = siteIndex == null ? null : siteIndex.freeze();
+        if (table == null) {
+            return;
+        }
+        Path path = indexDir().resolve("site-" + siteId + "-" + segmentSeq.getAndIncrement() + ".seg");
+        try (SegmentWriter writer = new SegmentWriter(path, siteId)) {
+            TreeMap<Integer, PostingList.Snapshot> lists = table.sortedSnapshots();
+            for (Map.Entry<Integer, PostingList.Snapshot> entry : lists.entrySet()) {
+                writer.addLemma(entry.getKey(), entry.getValue());
+            }
+            int[] pages = table.sortedPages();
+            writer.finish(pages, pages.length);
+            siteIndex.publish(Segment.open(path));
+            log.info("Segment written for site id={}: {} lemmas, {} pages -> {}", siteId, lists.size(), pages.length, path);
+        } catch (Exception e) {
+            log.error("Failed to write segment for site id={}: {}", siteId, e.getMessage(), e);
+            siteIndex.unfreeze();
+            deleteQuietly(path);
+            return;
+        }
+
+        if (sites.get(siteId) != siteIndex) {
+            // сайт удалили, пока писался сегмент
+            siteIndex.getSegments().forEach(s -> deleteQuietly(s.getPath()));
+            return;
+        }
+        if (needsMerge(siteIndex)) {
+            mergeSegments(siteIndex);
+        }
+        // пока писался сегмент, новая активная таблица могла перерасти порог
+        if (siteIndex.needsFlush(searchSettings.getSegmentFlushPostings())) {
+            flushSite(siteId);
+        }
+    }
+
+    private boolean needsMerge(SiteIndex siteIndex) {
+        return siteIndex.needsMerge(searchSettings.getMaxSegmentsPerSite(), searchSettings.getMergeDeletedRatio());
+    }
+
+    /**
+     * Сливает все сегменты сайта в один, выбрасывая удалённые страницы (в потоке segmentWriter).
+     * Леммы обходятся по возрастанию id одновременно во всех сегментах, поэтому
+     * в памяти держится только список текущей леммы.
+     */
+    private void mergeSegments(SiteIndex siteIndex) {
+        try {
+            if (sites.get(siteIndex.getSiteId()) == siteIndex) {
+                writeMergedSegment(siteIndex);
+            }
+        } finally {
+            siteIndex.mergeFinished();
+        }
+    }
+
+    private void writeMergedSegment(SiteIndex siteIndex) {
+        List<Segment> segments = siteIndex.getSegments();
+        int[] deleted = siteIndex.deletedPages();
+        int siteId = siteIndex.getSiteId();
+        Path path = indexDir().resolve("site-" + siteId + "-" + segmentSeq.getAndIncrement() + ".seg");
+        try (SegmentWriter writer = new SegmentWriter(path, siteId)) {
+            int[] cursors = new int[segments.size()];
+            while (true) {
+                int lemmaId = Integer.MAX_VALUE;
+                for (int s = 0; s < segments.size(); s++) {
+                    if (cursors[s] < segments.get(s).lemmaCount()) {
+                        lemmaId = Math.min(lemmaId, segments.get(s).lemmaIdAt(cursors[s]));
+                    }
+                }
+                if (lemmaId == Integer.MAX_VALUE) {
+                    break;
+                }
+                PostingList.Snapshot merged = PostingList.EMPTY;
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (cursors[s] < segment.lemmaCount() && segment.lemmaIdAt(cursors[s]) == lemmaId) {
+                        merged = SiteIndex.union(merged, segment.postingsAt(cursors[s]++));
+                    }
+                }
+                writer.addLemma(lemmaId, deleted.length == 0 ? merged : SiteIndex.without(merged, deleted));
+            }
+            int[] pages = segments.stream().map(Segment::pageIds).reduce(new int[0], SiteIndex::unionSorted);
+            int count = 0;
+            for (int pageId : pages) {
+                if (Arrays.binarySearch(deleted, pageId) < 0) {
+                    pages[count++] = pageId;
+                }
+            }
+            writer.finish(pages, count);
+            siteIndex.replaceSegments(segments, Segment.open(path), deleted);
+            segments.forEach(s -> deleteQuietly(s.getPath()));
+            log.info("Merged {} segments of site id={} into {}", segments.size(), siteId, path);
+        } catch (Exception e) {
+            log.error("Failed to merge segments of site id={}: {}", siteId, e.getMessage(), e);
+            deleteQuietly(path);
+        }
+    }
+
+    /** Элементы отсортированного a, которых нет в отсортированном b */
+    private static List<Integer> difference(int[] a, int[] b) {
+        List<Integer> result = new ArrayList<>();
+        int j = 0;
+        for (int value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete segment file {}: {}", path, e.getMessage());
+        }
+    }
+}
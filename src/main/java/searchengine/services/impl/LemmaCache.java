@@ -0,0 +1,82 @@
+package searchengine.services.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный кеш «словоформа -> лемма» перед морфологическим анализом.
+ * Разбит на сегменты со своей блокировкой, чтобы потоки индексации не ждали друг друга;
+ * внутри сегмента вытесняется давно не встречавшаяся словоформа.
+ * Отсутствие леммы (служебные части речи) тоже кешируется — как {@link #NO_LEMMA}.
+ */
+public final class LemmaCache {
+    static final String NO_LEMMA = "";
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Счётчики кеша */
+    public record Stats(long hits, long misses, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    LemmaCache(int maxSize) {
+        int perSegment = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Возвращает лемму словоформы, при промахе вычисляет её через loader.
+     * Вычисление идёт вне блокировки: одну словоформу два потока могут разобрать дважды, это безвредно.
+     */
+    String get(String token, Function<String, String> loader) {
+        Segment segment = segments[(token.hashCode() & 0x7fffffff) % SEGMENTS];
+        String lemma;
+        synchronized (segment) {
+            lemma = segment.get(token);
+        }
+        if (lemma != null) {
+            hits.increment();
+            return lemma;
+        }
+        misses.increment();
+        lemma = loader.apply(token);
+        synchronized (segment) {
+            segment.put(token, lemma);
+        }
+        return lemma;
+    }
+
+    Stats stats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), size);
+    }
+
+    private static final class Segment extends LinkedHashMap<String, String> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(Math.min(maxSize, 1024) * 2, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
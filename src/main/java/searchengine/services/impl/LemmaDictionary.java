@@ -0,0 +1,155 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+import searchengine.model.Site;
+import searchengine.repository.LemmaJdbcRepository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Словарь лемм сайта на время индексации: лемма -> id в таблице lemma.
+ * Для уже известных лемм приращения частоты копятся в памяти и уходят в БД
+ * одним upsert раз в lemmaFlushPages страниц; новые леммы создаются сразу,
+ * в транзакции страницы, потому что их id нужен для записи в index.
+ * Поэтому страница учитывается в два шага: {@link #addPage} внутри транзакции создаёт новые леммы,
+ * {@link #commitPage} после фиксации кеширует их id и добавляет приращения известных лемм.
+ * Откаченная страница не оставляет ни приращений, ни id несуществующих лемм.
+ * Вне сессии (open/close) каждая страница пишется одним upsert без кеша.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    private final LemmaJdbcRepository lemmaJdbcRepository;
+    private final IndexingSettings indexingSettings;
+    private final SiteStatsTracker siteStatsTracker;
+
+    private final Map<Integer, SiteLemmas> sessions = new ConcurrentHashMap<>();
+
+    /** Начинает сессию индексации сайта: с этого момента id лемм кешируются */
+    public void open(Site site) {
+        sessions.put(site.getId(), new SiteLemmas());
+    }
+
+    /** Сбрасывает накопленные частоты и забывает словарь сайта */
+    public void close(Site site) {
+        SiteLemmas lemmas = sessions.remove(site.getId());
+        if (lemmas != null) {
+            flush(site.getId(), lemmas);
+            log.info("Lemma dictionary closed for site id={}, {} lemmas cached", site.getId(), lemmas.ids.size());
+        }
+    }
+
+    /**
+     * Леммы страницы, подготовленные {@link #addPage}
+     *
+     * @param ids     лемма -> id для всех лемм страницы
+     * @param created новые леммы, вставленные в транзакции страницы
+     * @param cached  леммы из кеша сайта: их +1 к frequency учитывается в {@link #commitPage}
+     * @param inserted сколько лемм сайта создано в транзакции страницы (для статистики после её фиксации)
+     */
+    public record PageLemmas(Map<String, Integer> ids, Map<String, Integer> created, Set<String> cached, int inserted) {
+    }
+
+    /**
+     * Создаёт недостающие леммы страницы (frequency = 1) и возвращает id всех её лемм.
+     * Вызывается в транзакции, которая записывает страницу; после фиксации нужен {@link #commitPage}.
+     * Вне сессии сразу увеличивает frequency всех лемм страницы.
+     */
+    public PageLemmas addPage(Site site, Set<String> pageLemmas) {
+        SiteLemmas lemmas = sessions.get(site.getId());
+        if (lemmas == null) {
+            LemmaJdbcRepository.Upserted upserted = lemmaJdbcRepository.upsertFrequencies(site.getId(), onePerLemma(pageLemmas));
+            return new PageLemmas(upserted.ids(), Map.of(), Set.of(), upserted.inserted());
+        }
+
+        Map<String, Integer> ids = new HashMap<>(pageLemmas.size() * 2);
+        Set<String> cached = new HashSet<>(pageLemmas.size() * 2);
+        Map<String, Integer> unknown = new HashMap<>();
+        for (String lemma : pageLemmas) {
+            Integer id = lemmas.ids.get(lemma);
+            if (id != null) {
+                ids.put(lemma, id);
+                cached.add(lemma);
+            } else {
+                unknown.put(lemma, 1);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return new PageLemmas(ids, Map.of(), cached, 0);
+        }
+        LemmaJdbcRepository.Upserted created = lemmaJdbcRepository.upsertFrequencies(site.getId(), unknown);
+        ids.putAll(created.ids());
+        return new PageLemmas(ids, created.ids(), cached, created.inserted());
+    }
+
+    /**
+     * Страница записана: id новых лемм попадают в кеш, известные леммы получают +1 к накопленной частоте
+     */
+    public void commitPage(Site site, PageLemmas page) {
+        SiteLemmas lemmas = sessions.get(site.getId());
+        if (lemmas == null) {
+            if (!page.cached().isEmpty()) {
+                // сессия закрылась, пока страница писалась: приращения сразу в БД
+                int inserted = lemmaJdbcRepository.upsertFrequencies(site.getId(), onePerLemma(page.cached())).inserted();
+                siteStatsTracker.add(site.getId(), 0, inserted);
+            }
+            return;
+        }
+        lemmas.ids.putAll(page.created());
+        page.cached().forEach(lemma -> lemmas.pending.merge(lemma, 1, Integer::sum));
+
+        if (lemmas.pagesSinceFlush.incrementAndGet() >= indexingSettings.getLemmaFlushPages()) {
+            lemmas.pagesSinceFlush.set(0);
+            try {
+                flush(site.getId(), lemmas);
+            } catch (RuntimeException e) {
+                // страница уже записана; приращения остались в очереди и уйдут со следующим сбросом или в close
+                log.warn("Lemma frequency flush failed for site id={}, will retry: {}", site.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void flush(int siteId, SiteLemmas lemmas) {
+        Map<String, Integer> increments = new HashMap<>();
+        // remove() забирает накопленное атомарно: приращения, пришедшие позже, останутся до следующего сброса
+        for (String lemma : lemmas.pending.keySet()) {
+            Integer delta = lemmas.pending.remove(lemma);
+            if (delta != null) {
+                increments.put(lemma, delta);
+            }
+        }
+        if (!increments.isEmpty()) {
+            int inserted;
+            try {
+                inserted = lemmaJdbcRepository.upsertFrequencies(siteId, increments).inserted();
+            } catch (RuntimeException e) {
+                // не записанные приращения возвращаются в очередь до следующего сброса
+                increments.forEach((lemma, delta) -> lemmas.pending.merge(lemma, delta, Integer::sum));
+                throw e;
+            }
+            siteStatsTracker.add(siteId, 0, inserted);
+            log.debug("Flushed {} lemma frequency increments for site id={}", increments.size(), siteId);
+        }
+    }
+
+    private static Map<String, Integer> onePerLemma(Set<String> pageLemmas) {
+        Map<String, Integer> increments = new HashMap<>(pageLemmas.size() * 2);
+        pageLemmas.forEach(lemma -> increments.put(lemma, 1));
+        return increments;
+    }
+
+    private static class SiteLemmas {
+        final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        final Map<String, Integer> pending = new ConcurrentHashMap<>();
+        final AtomicInteger pagesSinceFlush = new AtomicInteger();
+    }
+}
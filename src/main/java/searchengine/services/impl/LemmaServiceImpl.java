@@ -1,7 +1,11 @@
 package searchengine.services.impl;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.IndexingSettings;
 import searchengine.services.LemmaService;
 
 import org.apache.lucene.morphology.LuceneMorphology;
@@ -10,23 +14,36 @@ import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.tartarus.snowball.ext.PorterStemmer;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.function.Function;
 
+/**
+ * Один экземпляр на приложение, вызывается параллельно из потоков индексации и поиска.
+ * Словари морфологии только читаются; стеммер хранит состояние между setCurrent/getCurrent,
+ * поэтому у каждого потока свой. Текст разбирается на слова {@link WordTokenizer} за один проход,
+ * результат разбора словоформы кешируется в {@link LemmaCache}.
+ */
 @Service
 @Slf4j
 public class LemmaServiceImpl implements LemmaService {
     private final LuceneMorphology ruMorph;
     private final EnglishLuceneMorphology enMorph;
-    private final PorterStemmer stemmer;
+    private final ThreadLocal<PorterStemmer> stemmer = ThreadLocal.withInitial(PorterStemmer::new);
+    private final LemmaCache cache;
+    private final Function<String, String> russianLemma = this::lemmatizeRussian;
+    private final Function<String, String> englishStem = this::stem;
     private static final Set<String> STOP_POS = Set.of("ПРЕДЛ", "СОЮЗ", "ЧАСТ", "МЕЖД", "СОЮЗ_ПРЕДЛ");
 
-    public LemmaServiceImpl() throws IOException {
+    public LemmaServiceImpl(IndexingSettings indexingSettings, MeterRegistry meterRegistry) throws IOException {
         this.ruMorph = new RussianLuceneMorphology();
         this.enMorph = new EnglishLuceneMorphology();
-        this.stemmer = new PorterStemmer();
-        log.info("LemmaService initialized with Russian and English morphologies");
+        this.cache = new LemmaCache(indexingSettings.getLemmaCacheSize());
+        FunctionCounter.builder("lemma.cache.requests", cache, c -> c.stats().hits()).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("lemma.cache.requests", cache, c -> c.stats().misses()).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("lemma.cache.size", cache, c -> c.stats().size()).register(meterRegistry);
+        log.info("LemmaService initialized with Russian and English morphologies, lemma cache size {}",
+                indexingSettings.getLemmaCacheSize());
     }
 
     @Override
@@ -36,45 +53,61 @@ public class LemmaServiceImpl implements LemmaService {
             log.warn("Received empty or null text for lemmatization");
             return Collections.emptyMap();
         }
-        // Очищаем от HTML-тегов и приводим к нижнему регистру
-        String cleaned = text.replaceAll("<[^>]+>", " ")
-                .toLowerCase(Locale.ROOT);
-        log.debug("Cleaned text: {}", cleaned);
-
-        // Разбиваем по не-литерам
-        String[] tokens = cleaned.split("[^a-zа-яё]+");
-        log.debug("Tokenized into {} tokens", tokens.length);
-
         Map<String, Integer> freq = new HashMap<>();
+        WordTokenizer.tokenize(text, (buf, length, cyrillic) -> addToken(freq, buf, length, cyrillic));
+        return result(freq);
+    }
 
-        for (String token : tokens) {
-            if (token.isBlank()) continue;
-            log.trace("Processing token='{}'", token);
-            String lemma = null;
-
-            // Русское слово
-            if (token.chars().allMatch(ch -> Character.UnicodeScript.of(ch) == Character.UnicodeScript.CYRILLIC)) {
-                List<String> infos = ruMorph.getMorphInfo(token);
-                List<String> forms = infos.stream()
-                        .filter(info -> STOP_POS.stream().noneMatch(info::contains))
-                        .flatMap(info -> ruMorph.getNormalForms(token).stream())
-                        .collect(Collectors.toList());
-                if (!forms.isEmpty()) lemma = forms.get(0);
-            }
-            // Английское слово
-            else if (token.chars().allMatch(Character::isLetter)) {
-                stemmer.setCurrent(token);
-                stemmer.stem();
-                lemma = stemmer.getCurrent();
-            }
+    @Override
+    public Map<String, Integer> extractLemmas(Reader reader) throws IOException {
+        Map<String, Integer> freq = new HashMap<>();
+        WordTokenizer.tokenize(reader, (buf, length, cyrillic) -> addToken(freq, buf, length, cyrillic));
+        return result(freq);
+    }
 
-            if (lemma != null && !lemma.isBlank()) {
-                freq.merge(lemma, 1, Integer::sum);
-                log.trace("Lemma='{}' count={} (token='{}')", lemma, freq.get(lemma), token);
-            }
+    private void addToken(Map<String, Integer> freq, char[] buf, int length, boolean cyrillic) {
+        String token = new String(buf, 0, length);
+        String lemma = cache.get(token, cyrillic ? russianLemma : englishStem);
+        if (!lemma.isEmpty()) {
+            freq.merge(lemma, 1, Integer::sum);
+            log.trace("Lemma='{}' count={} (token='{}')", lemma, freq.get(lemma), token);
         }
+    }
 
+    private Map<String, Integer> result(Map<String, Integer> freq) {
         log.info("extractLemmas result: {} unique lemmas found", freq.size());
+        if (log.isDebugEnabled()) {
+            LemmaCache.Stats stats = cache.stats();
+            log.debug("Lemma cache: {} entries, hit rate {}", stats.size(), String.format("%.3f", stats.hitRate()));
+        }
         return freq;
     }
+
+    /** Счётчики кеша словоформ: попадания, промахи, размер */
+    public LemmaCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Лемма русской словоформы (уже в нижнем регистре) или {@link LemmaCache#NO_LEMMA},
+     * если это служебное слово или морфология его не знает
+     */
+    private String lemmatizeRussian(String token) {
+        List<String> infos = ruMorph.getMorphInfo(token);
+        boolean significant = infos.stream().anyMatch(info -> STOP_POS.stream().noneMatch(info::contains));
+        if (significant) {
+            List<String> forms = ruMorph.getNormalForms(token);
+            if (!forms.isEmpty() && !forms.get(0).isBlank()) return forms.get(0);
+        }
+        return LemmaCache.NO_LEMMA;
+    }
+
+    /** Основа английского слова (или слова со смешанным алфавитом) стеммером Портера */
+    private String stem(String token) {
+        PorterStemmer porter = stemmer.get();
+        porter.setCurrent(token);
+        porter.stem();
+        String lemma = porter.getCurrent();
+        return lemma != null && !lemma.isBlank() ? lemma : LemmaCache.NO_LEMMA;
+    }
 }
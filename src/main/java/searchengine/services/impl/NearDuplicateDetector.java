@@ -0,0 +1,73 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.IndexingSettings;
+import searchengine.index.SimHashIndex;
+import searchengine.repository.PageJdbcRepository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отпечатки SimHash проиндексированных страниц по сайтам. Индекс сайта строится
+ * из столбца page.simhash при первом обращении и дальше ведётся вместе с записью страниц.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class NearDuplicateDetector {
+    // У страниц с малым числом лемм (заглушки, страницы ошибок) отпечатки совпадают случайно
+    static final int MIN_LEMMAS = 20;
+
+    private final IndexingSettings indexingSettings;
+    private final PageJdbcRepository pageJdbcRepository;
+
+    private final Map<Integer, SimHashIndex> sites = new ConcurrentHashMap<>();
+
+    /** Проверять ли страницу с таким числом различных лемм */
+    public boolean applies(int lemmaCount) {
+        return indexingSettings.getNearDuplicateDistance() >= 0 && lemmaCount >= MIN_LEMMAS;
+    }
+
+    /**
+     * Ищет среди страниц сайта почти такую же; если её нет, занимает отпечаток за новой страницей
+     * (после записи — {@link #assign}, при ошибке — {@link #release}).
+     *
+     * @return id найденной страницы (0 — она записывается прямо сейчас) или null
+     */
+    public Integer claim(int siteId, long simHash) {
+        SimHashIndex.Entry near = site(siteId).claim(simHash);
+        return near == null ? null : near.pageId();
+    }
+
+    public void assign(int siteId, long simHash, int pageId) {
+        site(siteId).assign(simHash, pageId);
+    }
+
+    public void release(int siteId, long simHash) {
+        site(siteId).release(simHash);
+    }
+
+    public void removePages(int siteId, Collection<Integer> pageIds) {
+        SimHashIndex index = sites.get(siteId);
+        if (index != null) {
+            pageIds.forEach(index::removePage);
+        }
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    private SimHashIndex site(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> {
+            SimHashIndex index = new SimHashIndex(indexingSettings.getNearDuplicateDistance());
+            pageJdbcRepository.findSimHashes(id, index::put);
+            log.debug("SimHash index of site id={} loaded: {} pages", id, index.size());
+            return index;
+        });
+    }
+}
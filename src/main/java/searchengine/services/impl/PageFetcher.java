@@ -0,0 +1,221 @@
+package searchengine.services.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.FetcherSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Общий HTTP-клиент краулера на java.net.http.HttpClient.
+ * Клиент один на приложение, поэтому соединения с хостом переиспользуются (keep-alive),
+ * по HTTPS согласуется HTTP/2 с мультиплексированием запросов в одном соединении.
+ * Тело запрашивается сжатым (gzip/deflate) и распаковывается здесь; разбором HTML занимается вызывающий.
+ * Число запросов в полёте ограничено maxInFlight: запрос ждёт свободного слота.
+ * Тело принимается без блокировки потоков клиента, а requestTimeoutMs ограничивает весь запрос
+ * вместе с чтением тела: сервер, замолчавший посреди ответа, не подвесит поток краулера.
+ * Потоки краулера пользуются синхронным {@link #fetch}; его ожидание прерываемо.
+ */
+@Component
+@Slf4j
+public class PageFetcher {
+    private final FetcherSettings settings;
+    private final HttpClient client;
+    private final Semaphore inFlight;
+
+    /** Ответ сервера с распакованным телом; uri — адрес после редиректов */
+    public record Response(URI uri, int statusCode, HttpHeaders headers, byte[] body) {
+        /** Первое значение заголовка или null */
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+    }
+
+    public PageFetcher(FetcherSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.inFlight = new Semaphore(Math.max(1, settings.getMaxInFlight()));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .build();
+        Gauge.builder("fetcher.in_flight", inFlight, s -> settings.getMaxInFlight() - s.availablePermits())
+                .description("HTTP-запросы краулера в полёте")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отправляет GET без блокировки на время ответа; блокируется только пока занято maxInFlight слотов.
+     * Результат завершается ошибкой {@link HttpTimeoutException}, если ответ вместе с телом
+     * не получен за requestTimeoutMs; отмена результата прерывает запрос.
+     *
+     * @param headers дополнительные заголовки запроса (например, условного GET)
+     */
+    public CompletableFuture<Response> fetchAsync(String url, Map<String, String> headers) throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(settings.getRequestTimeoutMs()))
+                .header("User-Agent", settings.getUserAgent())
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        headers.forEach(request::header);
+
+        inFlight.acquire();
+        CompletableFuture<HttpResponse<byte[]>> sent;
+        try {
+            sent = client.sendAsync(request.build(), info -> new LimitedBodySubscriber(settings.getMaxBodyBytes(), url));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        // слот освобождается, когда обмен закончился любым образом, в том числе отменой
+        sent.whenComplete((response, error) -> inFlight.release());
+        CompletableFuture<Response> result = sent.thenApply(this::decodeBody)
+                .orTimeout(settings.getRequestTimeoutMs(), TimeUnit.MILLISECONDS);
+        result.whenComplete((response, error) -> {
+            if (error != null) {
+                // таймаут или отмена: обрываем обмен, чтобы не держать соединение
+                sent.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /** Синхронный GET: тот же запрос, что {@link #fetchAsync}, с ожиданием ответа */
+    public Response fetch(String url, Map<String, String> headers) throws IOException {
+        CompletableFuture<Response> response;
+        try {
+            response = fetchAsync(url, headers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        }
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new HttpTimeoutException("Request timed out after " + settings.getRequestTimeoutMs() + " ms: " + url);
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to fetch " + url + ": " + cause, cause);
+        }
+    }
+
+    public String getUserAgent() {
+        return settings.getUserAgent();
+    }
+
+    /** Распаковывает тело, не больше maxBodyBytes после распаковки */
+    private Response decodeBody(HttpResponse<byte[]> response) {
+        byte[] body = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity").trim().toLowerCase();
+        // у 304 и 204 тела нет, даже если сервер прислал Content-Encoding
+        if (body.length > 0 && !encoding.equals("identity")) {
+            try (InputStream decoded = decode(new ByteArrayInputStream(body), encoding)) {
+                body = decoded.readNBytes(settings.getMaxBodyBytes() + 1);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            if (body.length > settings.getMaxBodyBytes()) {
+                throw new CompletionException(new IOException(
+                        "Response body exceeds " + settings.getMaxBodyBytes() + " bytes: " + response.uri()));
+            }
+        }
+        return new Response(response.uri(), response.statusCode(), response.headers(), body);
+    }
+
+    /**
+     * Копит тело ответа в памяти по мере поступления, не блокируя потоки клиента;
+     * на превышении maxBytes отменяет получение и завершается ошибкой.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final int maxBytes;
+        private final String url;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(int maxBytes, String url) {
+            this.maxBytes = maxBytes;
+            this.url = url;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (body.size() + buffer.remaining() > maxBytes) {
+                    subscription.cancel();
+                    result.completeExceptionally(new IOException("Response body exceeds " + maxBytes + " bytes: " + url));
+                    return;
+                }
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                body.writeBytes(chunk);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(body.toByteArray());
+        }
+    }
+
+    private static InputStream decode(InputStream in, String encoding) throws IOException {
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(in);
+            case "deflate" -> new InflaterInputStream(in);
+            default -> throw new IOException("Unsupported Content-Encoding: " + encoding);
+        };
+    }
+}
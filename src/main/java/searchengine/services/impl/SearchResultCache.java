@@ -0,0 +1,232 @@
+package searchengine.services.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResultItem;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кеш готовых ответов /api/search.
+ * Ключ — отсортированный набор лемм запроса, фильтр сайта и окно offset/limit.
+ * Вместе с ответом хранятся эпохи индекса на момент расчёта: индексация страницы
+ * увеличивает эпоху своего сайта, запуск индексации — общую эпоху, и устаревшие
+ * записи отбрасываются при следующем обращении.
+ * Объём ограничен оценкой размера ответов в байтах (search-settings.result-cache-max-bytes),
+ * при переполнении вытесняются давно не запрошенные записи.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SearchResultCache {
+    private static final int STATS_LOG_EVERY = 1000;
+
+    private final SearchSettings searchSettings;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong globalEpoch = new AtomicLong();
+    private final Map<String, AtomicLong> siteEpochs = new ConcurrentHashMap<>();
+
+    // порядок доступа: первая запись — самая давно запрошенная
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /** Ключ кеша: леммы через пробел в алфавитном порядке, URL сайта или null, окно выдачи */
+    public record Key(String lemmas, String site, int offset, int limit) {
+        public static Key of(Collection<String> lemmas, String site, int offset, int limit) {
+            return new Key(String.join(" ", new TreeSet<>(lemmas)), site, offset, limit);
+        }
+    }
+
+    /** Эпохи индекса, снятые до начала расчёта ответа */
+    public record Stamp(long global, Map<String, Long> sites) {
+    }
+
+    /** Счётчики кеша */
+    public record Stats(long hits, long misses, long evictions, long invalidations, int entries, long usedBytes) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(Stamp stamp, SearchResponse response, long bytes) {
+    }
+
+    /** Счётчики кеша в Micrometer: search.cache.requests{result=hit|miss}, evictions, размер */
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("search.cache.requests", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("search.cache.requests", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("search.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("search.cache.invalidations", invalidations, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("search.cache.size", this, c -> c.stats().usedBytes()).baseUnit("bytes").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return searchSettings.getResultCacheMaxBytes() > 0;
+    }
+
+    /**
+     * Возвращает ответ из кеша, если он рассчитан на текущих эпохах индекса, иначе null
+     */
+    public SearchResponse get(Key key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        SearchResponse response = null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (isCurrent(entry.stamp(), key.site())) {
+                    response = entry.response();
+                } else {
+                    entries.remove(key);
+                    usedBytes -= entry.bytes();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+        if (response != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        if ((hits.get() + misses.get()) % STATS_LOG_EVERY == 0) {
+            Stats stats = stats();
+            log.info("Search cache: {} hits, {} misses (hit rate {}), {} entries, {} bytes",
+                    stats.hits(), stats.misses(), String.format("%.2f", stats.hitRate()),
+                    stats.entries(), stats.usedBytes());
+        }
+        log.debug("Search cache {} for {}", response != null ? "hit" : "miss", key);
+        return response;
+    }
+
+    /**
+     * Снимает эпохи индекса. Вызывается до чтения индекса, чтобы страница,
+     * проиндексированная во время расчёта, сделала результат устаревшим.
+     */
+    public Stamp stamp() {
+        Map<String, Long> sites = new HashMap<>(siteEpochs.size() * 2);
+        siteEpochs.forEach((url, epoch) -> sites.put(url, epoch.get()));
+        return new Stamp(globalEpoch.get(), sites);
+    }
+
+    /** Кладёт успешный ответ в кеш; слишком большие ответы не кешируются */
+    public void put(Key key, Stamp stamp, SearchResponse response) {
+        if (!isEnabled() || !response.isResult()) {
+            return;
+        }
+        long maxBytes = searchSettings.getResultCacheMaxBytes();
+        long bytes = estimateBytes(key, response);
+        if (bytes > maxBytes / 4) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(stamp, response, bytes));
+            if (previous != null) {
+                usedBytes -= previous.bytes();
+            }
+            usedBytes += bytes;
+            Iterator<Entry> it = entries.values().iterator();
+            while (usedBytes > maxBytes && it.hasNext()) {
+                usedBytes -= it.next().bytes();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Содержимое индекса сайта изменилось. Если вызов внутри транзакции, эпоха
+     * увеличивается ещё раз после её завершения: поиск, начатый до коммита, не должен
+     * закешировать старые данные под новой эпохой.
+     */
+    public void invalidateSite(String siteUrl) {
+        bumpSite(siteUrl);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bumpSite(siteUrl);
+                }
+            });
+        }
+    }
+
+    /** Сбрасывает все записи (запуск индексации меняет набор сайтов) */
+    public void invalidateAll() {
+        globalEpoch.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+            usedBytes = 0;
+        }
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), evictions.get(), invalidations.get(), entries.size(), usedBytes);
+        }
+    }
+
+    private void bumpSite(String siteUrl) {
+        siteEpochs.computeIfAbsent(siteUrl, u -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Для выдачи по одному сайту важна только его эпоха, для поиска по всем сайтам —
+     * эпохи всех сайтов, включая появившиеся после расчёта
+     */
+    private boolean isCurrent(Stamp stamp, String site) {
+        if (stamp.global() != globalEpoch.get()) {
+            return false;
+        }
+        if (site != null) {
+            AtomicLong epoch = siteEpochs.get(site);
+            return (epoch == null ? 0 : epoch.get()) == stamp.sites().getOrDefault(site, 0L);
+        }
+        for (Map.Entry<String, AtomicLong> e : siteEpochs.entrySet()) {
+            if (e.getValue().get() != stamp.sites().getOrDefault(e.getKey(), 0L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Грубая оценка занимаемой памяти: строки по 2 байта на символ плюс накладные расходы объектов */
+    private static long estimateBytes(Key key, SearchResponse response) {
+        long bytes = 256 + 2L * key.lemmas().length() + 2L * (key.site() == null ? 0 : key.site().length());
+        if (response.getData() != null) {
+            for (SearchResultItem item : response.getData()) {
+                bytes += 112 + 2L * (length(item.getSite()) + length(item.getSiteName()) + length(item.getUri())
+                        + length(item.getTitle()) + length(item.getSnippet()));
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -1,25 +1,42 @@
 package searchengine.services.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.PageRelevance;
+import searchengine.dto.search.PageSummary;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.search.SearchResultItem;
-import searchengine.model.Index;
+import searchengine.index.PageScores;
+import searchengine.index.TopPages;
 import searchengine.model.Lemma;
-import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageArchive;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.repository.SiteStatsRepository;
+import searchengine.services.InvertedIndexService;
 import searchengine.services.LemmaService;
 import searchengine.services.SearchService;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,7 +50,29 @@ public class SearchServiceImpl implements SearchService {
     private final SiteRepository siteRepository;
     private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
+    private final PageArchive pageArchive;
     private final IndexRepository indexRepository;
+    private final InvertedIndexService invertedIndexService;
+    private final SearchResultCache searchResultCache;
+    private final SiteStatsTracker siteStatsTracker;
+    private final SearchSettings searchSettings;
+    private final MeterRegistry meterRegistry;
+
+    // поиск по сайтам-шардам; очередь ограничена, лишние запросы отклоняются
+    private ExecutorService shardExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, searchSettings.getShardThreads());
+        shardExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, searchSettings.getShardQueueCapacity())),
+                new CustomizableThreadFactory("search-shard-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shardExecutor.shutdownNow();
+    }
 
     @Override
     public SearchResponse search(String query, String siteUrl, Integer offset, Integer limit) {
@@ -46,182 +85,276 @@ public class SearchServiceImpl implements SearchService {
             return response;
         }
 
-        // 2) Определяем список сайтов для поиска
-        List<Site> sites = new ArrayList<>();
+        // 2) Лемматизация запроса; повторный запрос с тем же набором лемм отдаём из кеша
+        Map<String, Integer> queryLemmas = lemmaService.extractLemmas(query);
+        log.info("Query lemmas: {}", queryLemmas.keySet());
+        int from = Math.max(offset, 0);
+        int size = limit != null ? limit : 20;
+        SearchResultCache.Key cacheKey = SearchResultCache.Key.of(queryLemmas.keySet(), siteUrl, from, size);
+        SearchResponse cached = searchResultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        // эпохи снимаем до чтения данных: изменение индекса во время расчёта сделает запись устаревшей
+        SearchResultCache.Stamp stamp = searchResultCache.stamp();
+
+        // 3) Определяем список сайтов для поиска и число страниц на каждом (из счётчиков статистики)
+        Map<Integer, SiteStatsRepository.Counts> siteCounts = siteStatsTracker.counts();
+        Map<Site, Long> sitePages = new LinkedHashMap<>();
         if (siteUrl != null) {
             Site site = siteRepository.findByUrl(siteUrl)
                     .orElse(null);
-            if (site == null || pageRepository.countBySite(site) == 0) {
+            long pages = site == null ? 0 : pageCount(site, siteCounts);
+            if (pages == 0) {
                 response.setResult(false);
                 response.setError("Сайт не проиндексирован: " + siteUrl);
                 return response;
             }
-            sites.add(site);
+            sitePages.put(site, pages);
         } else {
             // все проиндексированные
             for (Site s : siteRepository.findAll()) {
-                if (pageRepository.countBySite(s) > 0) {
-                    sites.add(s);
+                long pages = pageCount(s, siteCounts);
+                if (pages > 0) {
+                    sitePages.put(s, pages);
                 }
             }
-            if (sites.isEmpty()) {
+            if (sitePages.isEmpty()) {
                 response.setResult(false);
                 response.setError("Нет проиндексированных сайтов для поиска");
                 return response;
             }
         }
 
-        // 3) Лемматизация запроса
-        Map<String, Integer> queryLemmas = lemmaService.extractLemmas(query);
-        log.info("Query lemmas: {}", queryLemmas.keySet());
         if (queryLemmas.isEmpty()) {
             // нечего искать
             response.setResult(true);
             response.setCount(0);
             response.setData(Collections.emptyList());
+            searchResultCache.put(cacheKey, stamp, response);
             return response;
         }
 
-        // 4) Для каждого сайта собираем результаты
-        List<SearchResultItem> allItems = new ArrayList<>();
-        for (Site site : sites) {
-            long totalPages = pageRepository.countBySite(site);
-
-            // 4.1) Фильтрация «частых» лемм
-            log.info("Site: {}, total pages: {}", site.getUrl(), totalPages);
-            List<Lemma> filtered = queryLemmas.keySet().stream()
-                    .map(lemmaStr -> {
-                        var lemma = lemmaRepository.findByLemmaAndSite(lemmaStr, site).orElse(null);
-                        log.info("Lemma '{}' for site {}: {}", lemmaStr, site.getUrl(), lemma);
-                        return lemma;
-                    })
-                    .filter(Objects::nonNull)
-                    .filter(l -> {
-                        double freqPercent = (double) l.getFrequency() / totalPages;
-                        log.info("Lemma '{}' frequency: {}, percent: {}, max: {}", l.getLemma(), l.getFrequency(), freqPercent, MAX_LEMMA_FREQUENCY_PERCENT);
-                        // Временно отключаем фильтрацию для отладки
-                        return true; // freqPercent <= MAX_LEMMA_FREQUENCY_PERCENT;
-                    })
-                    .sorted(Comparator.comparingInt(Lemma::getFrequency))
-                    .toList();
-
-            if (filtered.isEmpty()) {
-                continue;
+        // 4-5) Леммы запроса и лучшие offset + limit страниц каждого сайта
+        int total;
+        List<TopPages.Hit<Site>> window;
+        List<String> unavailableSites = new ArrayList<>();
+        if (sitePages.size() == 1) {
+            // один сайт ищем в текущем потоке
+            Map.Entry<Site, Long> entry = sitePages.entrySet().iterator().next();
+            Site site = entry.getKey();
+            if (!invertedIndexService.isReady()) {
+                // без индекса в памяти OFFSET/LIMIT выполняет сама БД
+                List<Lemma> lemmas = selectLemmas(site, entry.getValue(), queryLemmas.keySet());
+                long phaseStart = System.nanoTime();
+                List<Integer> lemmaIds = lemmas.stream().map(Lemma::getId).toList();
+                if (lemmaIds.isEmpty()) {
+                    total = 0;
+                    window = List.of();
+                } else {
+                    total = (int) indexRepository.countMatchingPages(site.getId(), lemmaIds, lemmaIds.size());
+                    List<PageRelevance> top = indexRepository.findPageRelevance(site.getId(), lemmaIds, lemmaIds.size(), 1, 0);
+                    double maxAbs = top.isEmpty() ? 0 : top.get(0).getRelevance();
+                    window = indexRepository.findPageRelevance(site.getId(), lemmaIds, lemmaIds.size(), size, from).stream()
+                            .map(r -> new TopPages.Hit<>(site, r.getPageId(), maxAbs > 0 ? (float) (r.getRelevance() / maxAbs) : 0f))
+                            .toList();
+                }
+                recordPhase("postings", System.nanoTime() - phaseStart);
+            } else {
+                ShardResult shard = searchShard(site, entry.getValue(), queryLemmas.keySet(), from + size);
+                total = shard.matched();
+                window = shard.top().subList(Math.min(from, shard.top().size()), shard.top().size());
             }
-
-            // 4.2) Поиск страниц: сначала по самой «редкой» лемме
-            List<Page> pages = indexRepository.findByLemma(filtered.get(0)).stream()
-                    .map(Index::getPage)
-                    .filter(p -> p.getSite().equals(site))
-                    .distinct()
-                    .collect(Collectors.toList());
-
-            // затем по каждой следующей — пересечение
-            for (int i = 1; i < filtered.size() && !pages.isEmpty(); i++) {
-                Lemma lem = filtered.get(i);
-                Set<Page> pagesWithThis = indexRepository.findByLemma(lem).stream()
-                        .map(Index::getPage)
-                        .filter(p -> p.getSite().equals(site))
-                        .collect(Collectors.toSet());
-                pages.retainAll(pagesWithThis);
+        } else {
+            // каждый сайт — отдельный шард: ищем параллельно, лучшие страницы шардов сливаем
+            List<ShardResult> shards = searchShards(sitePages, queryLemmas.keySet(), from + size, unavailableSites);
+            if (shards.isEmpty()) {
+                response.setResult(false);
+                response.setError("Сайты не ответили вовремя: " + String.join(", ", unavailableSites));
+                return response;
+            }
+            long phaseStart = System.nanoTime();
+            List<List<TopPages.Hit<Site>>> tops = new ArrayList<>(shards.size());
+            int matched = 0;
+            for (ShardResult shard : shards) {
+                tops.add(shard.top());
+                matched += shard.matched();
             }
+            List<TopPages.Hit<Site>> best = TopPages.merge(tops, from + size);
+            total = matched;
+            window = best.subList(Math.min(from, best.size()), best.size());
+            recordPhase("merge", System.nanoTime() - phaseStart);
+        }
 
-            if (pages.isEmpty()) {
+        // 6) Постраничная выдача: для попавших в окно страниц читаем заголовок и текст, HTML не трогаем
+        long phaseStart = System.nanoTime();
+        Map<Integer, PageSummary> pagesById = pageRepository.findByIdIn(
+                        window.stream().map(TopPages.Hit::pageId).toList())
+                .stream()
+                .collect(Collectors.toMap(PageSummary::getId, p -> p));
+
+        List<SearchResultItem> pageItems = new ArrayList<>(window.size());
+        List<String> queryWords = new ArrayList<>(queryLemmas.keySet());
+        for (TopPages.Hit<Site> candidate : window) {
+            PageSummary page = pagesById.get(candidate.pageId());
+            if (page == null) {
                 continue;
             }
+            Site site = candidate.owner();
 
-            // 4.3) Рассчитываем абсолютную релевантность
-            Map<Page, Double> absRelMap = new HashMap<>();
-            double maxAbs = 0;
-            for (Page page : pages) {
-                double sumRank = 0;
-                for (Lemma lem : filtered) {
-                    for (Index idx : indexRepository.findByLemmaAndPage(lem, page)) {
-                        sumRank += idx.getRank();
-                    }
-                }
-                absRelMap.put(page, sumRank);
-                if (sumRank > maxAbs) {
-                    maxAbs = sumRank;
-                }
+            String title = page.getTitle();
+            String text = page.getText();
+            if (text == null) {
+                // страница проиндексирована до появления столбцов title/text
+                Document doc = Jsoup.parse(pageRepository.findById(page.getId()).map(pageArchive::content).orElse(""));
+                title = doc.title();
+                text = doc.text();
             }
+            String snippet = SnippetGenerator.generate(text, queryWords, 150);
 
-            // 4.4) Формируем SearchResultItem
-            for (Page page : pages) {
-                double absRel = absRelMap.get(page);
-                float rel = maxAbs > 0 ? (float)(absRel / maxAbs) : 0f;
-
-                // извлекаем title
-                Document doc = Jsoup.parse(page.getContent());
-                String title = doc.title();
-
-                // формируем сниппет
-                String snippet = generateSnippet(page, new ArrayList<>(queryLemmas.keySet()), 150);
-
-                allItems.add(new SearchResultItem(
-                        site.getUrl(),
-                        site.getName(),
-                        page.getPath(),
-                        title,
-                        snippet,
-                        rel
-                ));
-            }
+            pageItems.add(new SearchResultItem(
+                    site.getUrl(),
+                    site.getName(),
+                    page.getPath(),
+                    title,
+                    snippet,
+                    candidate.relevance()
+            ));
         }
 
-        // 5) Сортировка по убыванию релевантности
-        allItems.sort(Comparator.comparingDouble(SearchResultItem::getRelevance).reversed());
-
-        // 6) Постраничная выдача
-        int total = allItems.size();
-        int from = Math.min(Math.max(offset, 0), total);
-        int to = Math.min(from + (limit != null ? limit : 20), total);
-        List<SearchResultItem> pageItems = allItems.subList(from, to);
+        recordPhase("snippets", System.nanoTime() - phaseStart);
 
         response.setResult(true);
         response.setCount(total);
         response.setData(pageItems);
+        if (unavailableSites.isEmpty()) {
+            searchResultCache.put(cacheKey, stamp, response);
+        } else {
+            // неполную выдачу не кешируем: при следующем запросе сайты могут успеть ответить
+            response.setUnavailableSites(unavailableSites);
+        }
         return response;
     }
 
+    /** Лучшие страницы одного сайта по убыванию релевантности и число всех найденных на нём */
+    private record ShardResult(List<TopPages.Hit<Site>> top, int matched) {
+    }
+
     /**
-     * Генерирует сниппет длиной ~snippetLen символов, выделяя <b>жирным</b> все вхождения queryWords.
+     * Запускает поиск по всем сайтам на пуле шардов и собирает ответы, успевшие к общему сроку.
+     * Сайты, которые не ответили, отклонены переполненной очередью или упали с ошибкой,
+     * добавляются в unavailableSites.
      */
-    private String generateSnippet(Page page, List<String> queryWords, int snippetLen) {
-        String text = Jsoup.parse(page.getContent()).text();
-        String lower = text.toLowerCase();
-        int idx = -1;
-        for (String w : queryWords) {
-            int p = lower.indexOf(w.toLowerCase());
-            if (p >= 0 && (idx < 0 || p < idx)) {
-                idx = p;
+    private List<ShardResult> searchShards(Map<Site, Long> sitePages, Set<String> queryLemmas, int k,
+                                           List<String> unavailableSites) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchSettings.getShardTimeoutMs());
+        Map<Site, Future<ShardResult>> futures = new LinkedHashMap<>();
+        for (Map.Entry<Site, Long> entry : sitePages.entrySet()) {
+            Site site = entry.getKey();
+            try {
+                futures.put(site, shardExecutor.submit(() -> searchShard(site, entry.getValue(), queryLemmas, k)));
+            } catch (RejectedExecutionException e) {
+                log.warn("Search shard {} rejected: shard queue is full", site.getUrl());
+                unavailableSites.add(site.getUrl());
             }
         }
-        if (idx < 0) {
-            // нет прямых вхождений — берём начало
-            idx = 0;
+        List<ShardResult> results = new ArrayList<>(futures.size());
+        for (Map.Entry<Site, Future<ShardResult>> entry : futures.entrySet()) {
+            String url = entry.getKey().getUrl();
+            Future<ShardResult> future = entry.getValue();
+            try {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Search shard {} timed out after {} ms", url, searchSettings.getShardTimeoutMs());
+                unavailableSites.add(url);
+            } catch (ExecutionException e) {
+                log.warn("Search shard {} failed", url, e.getCause());
+                unavailableSites.add(url);
+            } catch (InterruptedException e) {
+                futures.values().forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search interrupted", e);
+            }
         }
-        int start = Math.max(0, idx - snippetLen / 2);
-        int end = Math.min(text.length(), start + snippetLen);
-        String snippet = text.substring(start, end).trim();
-
-        // завершаем обрезку на слове
-        if (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
-            int cut = snippet.lastIndexOf(' ');
-            if (cut > 0) snippet = snippet.substring(0, cut);
+        if (!unavailableSites.isEmpty()) {
+            meterRegistry.counter("search.shard.unavailable").increment(unavailableSites.size());
         }
+        return results;
+    }
 
-        // отладочная информация
-        log.debug("Original snippet: {}", snippet);
-        log.debug("Query words: {}", queryWords);
+    /**
+     * Поиск по одному сайту: леммы запроса, страницы со всеми леммами (из сегментов индекса,
+     * а пока он не загружен — из таблицы index) и k лучших из них по относительной релевантности.
+     */
+    private ShardResult searchShard(Site site, long totalPages, Set<String> queryLemmas, int k) {
+        List<Lemma> lemmas = selectLemmas(site, totalPages, queryLemmas);
+        if (lemmas.isEmpty()) {
+            return new ShardResult(List.of(), 0);
+        }
+        long phaseStart = System.nanoTime();
+        PageScores scores = invertedIndexService.isReady()
+                ? invertedIndexService.findPages(site.getId(), lemmas.stream().map(Lemma::getId).toList())
+                : findPagesInDatabase(site, lemmas);
+        long scored = System.nanoTime();
+        recordPhase("postings", scored - phaseStart);
+        // храним только лучшие k страниц, остальные лишь считаем
+        TopPages<Site> top = new TopPages<>(k);
+        top.addAll(site, scores);
+        List<TopPages.Hit<Site>> best = top.sorted();
+        recordPhase("scoring", System.nanoTime() - scored);
+        return new ShardResult(best, top.matched());
+    }
+
+    /** Леммы запроса, которые есть на сайте, от редких к частым */
+    private List<Lemma> selectLemmas(Site site, long totalPages, Set<String> queryLemmas) {
+        long phaseStart = System.nanoTime();
+        // Фильтрация «частых» лемм
+        log.debug("Site: {}, total pages: {}", site.getUrl(), totalPages);
+        List<Lemma> filtered = queryLemmas.stream()
+                .map(lemmaStr -> {
+                    var lemma = lemmaRepository.findByLemmaAndSite(lemmaStr, site).orElse(null);
+                    log.debug("Lemma '{}' for site {}: {}", lemmaStr, site.getUrl(), lemma);
+                    return lemma;
+                })
+                .filter(Objects::nonNull)
+                .filter(l -> {
+                    double freqPercent = (double) l.getFrequency() / totalPages;
+                    log.debug("Lemma '{}' frequency: {}, percent: {}, max: {}", l.getLemma(), l.getFrequency(), freqPercent, MAX_LEMMA_FREQUENCY_PERCENT);
+                    return freqPercent <= MAX_LEMMA_FREQUENCY_PERCENT;
+                })
+                .sorted(Comparator.comparingInt(Lemma::getFrequency))
+                .toList();
+        recordPhase("lemmas", System.nanoTime() - phaseStart);
+        return filtered;
+    }
+
+    /** Число страниц сайта по счётчикам статистики; для сайта без счётчика — COUNT по page */
+    private long pageCount(Site site, Map<Integer, SiteStatsRepository.Counts> siteCounts) {
+        SiteStatsRepository.Counts counts = siteCounts.get(site.getId());
+        return counts != null ? counts.pages() : pageRepository.countBySite(site);
+    }
+
+    /** Время этапа поиска: lemmas, postings, scoring (по каждому сайту), merge, snippets */
+    private void recordPhase(String phase, long nanos) {
+        meterRegistry.timer("search.phase", "phase", phase).record(nanos, TimeUnit.NANOSECONDS);
+    }
 
-        // выделяем теги <b>
-        for (String w : queryWords) {
-            if (w.isBlank()) continue;
-            String before = snippet;
-            snippet = snippet.replaceAll("(?i)\\b" + Pattern.quote(w) + "\\b", "<b>$0</b>");
-            log.debug("Word '{}': before='{}', after='{}'", w, before, snippet);
+    /**
+     * Поиск по таблице index: используется, пока индекс в памяти не готов или выключен.
+     * Пересечение и сумма rank считаются одним запросом с GROUP BY page_id.
+     */
+    private PageScores findPagesInDatabase(Site site, List<Lemma> filtered) {
+        List<Integer> lemmaIds = filtered.stream().map(Lemma::getId).toList();
+        List<PageRelevance> rows = new ArrayList<>(indexRepository.findPageRelevance(
+                site.getId(), lemmaIds, lemmaIds.size(), Integer.MAX_VALUE, 0));
+        rows.sort(Comparator.comparing(PageRelevance::getPageId));
+        int[] pageIds = new int[rows.size()];
+        float[] scores = new float[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            pageIds[i] = rows.get(i).getPageId();
+            scores[i] = rows.get(i).getRelevance().floatValue();
         }
-        return snippet;
+        return new PageScores(pageIds, scores, rows.size());
     }
 }
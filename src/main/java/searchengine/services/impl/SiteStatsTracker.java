@@ -0,0 +1,127 @@
+package searchengine.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.repository.SiteStatsRepository;
+import searchengine.repository.SiteStatsRepository.Counts;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Счётчики страниц и лемм сайтов для статистики (таблица site_stats).
+ * Сервисы индексации сообщают об изменениях, когда транзакция с ними уже зафиксирована;
+ * изменения копятся в памяти и прибавляются к site_stats одним upsert при явном сбросе:
+ * раз в {@value #FLUSH_CHANGES} изменений сайта, по окончании его обхода и при остановке приложения.
+ * Если запись не удалась, изменения остаются в памяти до следующего сброса.
+ * Статистика читается одним SELECT плюс ещё не сброшенные изменения, без COUNT по page и lemma.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SiteStatsTracker {
+    private static final int FLUSH_CHANGES = 1000;
+
+    private final SiteStatsRepository siteStatsRepository;
+
+    // site id -> ещё не записанные в site_stats изменения
+    private final Map<Integer, Delta> pending = new ConcurrentHashMap<>();
+
+    /** Изменения одного сайта; поля защищены монитором самого объекта */
+    private static final class Delta {
+        long pages;
+        long lemmas;
+        int changes;
+    }
+
+    /**
+     * Учитывает зафиксированные изменения сайта
+     *
+     * @param pages  на сколько изменилось число страниц (со знаком)
+     * @param lemmas сколько лемм создано
+     */
+    public void add(int siteId, long pages, long lemmas) {
+        if (pages == 0 && lemmas == 0) {
+            return;
+        }
+        Delta delta = pending.computeIfAbsent(siteId, id -> new Delta());
+        synchronized (delta) {
+            delta.pages += pages;
+            delta.lemmas += lemmas;
+            if (++delta.changes >= FLUSH_CHANGES) {
+                write(siteId, delta);
+            }
+        }
+    }
+
+    /** Записывает накопленные изменения сайта в site_stats */
+    public void flush(int siteId) {
+        Delta delta = pending.get(siteId);
+        if (delta == null) {
+            return;
+        }
+        synchronized (delta) {
+            write(siteId, delta);
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        pending.keySet().forEach(this::flush);
+    }
+
+    // вызывается под монитором delta: пока строка обновляется, читатели не увидят изменения дважды
+    private void write(int siteId, Delta delta) {
+        if (delta.pages != 0 || delta.lemmas != 0) {
+            try {
+                siteStatsRepository.add(siteId, delta.pages, delta.lemmas);
+            } catch (RuntimeException e) {
+                // изменения остаются в памяти; следующая попытка — через FLUSH_CHANGES изменений или при сбросе
+                delta.changes = 0;
+                log.warn("Failed to save site stats for site id={}, will retry: {}", siteId, e.getMessage());
+                return;
+            }
+        }
+        delta.pages = 0;
+        delta.lemmas = 0;
+        delta.changes = 0;
+    }
+
+    /**
+     * Счётчики сайтов вместе с несброшенными изменениями, в том числе сайтов, у которых строки site_stats ещё нет.
+     * @return site id -> счётчики
+     */
+    public Map<Integer, Counts> counts() {
+        Map<Integer, Counts> counts = siteStatsRepository.findAll();
+        pending.forEach((siteId, delta) -> {
+            synchronized (delta) {
+                if (delta.pages != 0 || delta.lemmas != 0) {
+                    counts.merge(siteId, new Counts(delta.pages, delta.lemmas),
+                            (saved, unsaved) -> new Counts(saved.pages() + unsaved.pages(), saved.lemmas() + unsaved.lemmas()));
+                }
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Точный пересчёт счётчиков сайта по page и lemma; несброшенные изменения отбрасываются
+     */
+    public Counts recount(int siteId) {
+        Delta delta = pending.computeIfAbsent(siteId, id -> new Delta());
+        synchronized (delta) {
+            Counts counts = siteStatsRepository.recount(siteId);
+            delta.pages = 0;
+            delta.lemmas = 0;
+            delta.changes = 0;
+            return counts;
+        }
+    }
+
+    /** Забывает несброшенные изменения удалённого сайта */
+    public void forget(int siteId) {
+        pending.remove(siteId);
+    }
+}
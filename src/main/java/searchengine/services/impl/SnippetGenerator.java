@@ -0,0 +1,55 @@
+package searchengine.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Сниппеты для поисковой выдачи
+ */
+@Slf4j
+public final class SnippetGenerator {
+    private SnippetGenerator() {
+    }
+
+    /**
+     * Генерирует сниппет длиной ~snippetLen символов, выделяя <b>жирным</b> все вхождения queryWords.
+     */
+    public static String generate(String text, List<String> queryWords, int snippetLen) {
+        String lower = text.toLowerCase();
+        int idx = -1;
+        for (String w : queryWords) {
+            int p = lower.indexOf(w.toLowerCase());
+            if (p >= 0 && (idx < 0 || p < idx)) {
+                idx = p;
+            }
+        }
+        if (idx < 0) {
+            // нет прямых вхождений — берём начало
+            idx = 0;
+        }
+        int start = Math.max(0, idx - snippetLen / 2);
+        int end = Math.min(text.length(), start + snippetLen);
+        String snippet = text.substring(start, end).trim();
+
+        // завершаем обрезку на слове
+        if (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+            int cut = snippet.lastIndexOf(' ');
+            if (cut > 0) snippet = snippet.substring(0, cut);
+        }
+
+        // отладочная информация
+        log.debug("Original snippet: {}", snippet);
+        log.debug("Query words: {}", queryWords);
+
+        // выделяем теги <b>
+        for (String w : queryWords) {
+            if (w.isBlank()) continue;
+            String before = snippet;
+            snippet = snippet.replaceAll("(?i)\\b" + Pattern.quote(w) + "\\b", "<b>$0</b>");
+            log.debug("Word '{}': before='{}', after='{}'", w, before, snippet);
+        }
+        return snippet;
+    }
+}
@@ -1,6 +1,9 @@
 package searchengine.services.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import searchengine.config.SiteConfig;
 import searchengine.config.SitesList;
@@ -10,41 +13,76 @@ import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
 import searchengine.model.SiteStatus;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.repository.SiteStatsRepository;
+import searchengine.repository.SiteStatsRepository.Counts;
 import searchengine.services.StatisticsService;
 
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * Статистика по сайтам. Число страниц и лемм берётся из счётчиков site_stats,
+ * которые ведутся при индексации ({@link SiteStatsTracker}), поэтому запрос
+ * не пересчитывает таблицы page и lemma.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
+    private static final Counts NO_COUNTS = new Counts(0, 0);
 
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteStatsRepository siteStatsRepository;
+    private final SiteStatsTracker siteStatsTracker;
+
+    /**
+     * Заводит счётчики сайтам, проиндексированным до появления site_stats.
+     * Пересчёт идёт в фоне, чтобы не задерживать старт приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initCounters() {
+        List<Integer> missing = siteStatsRepository.findSitesWithoutStats();
+        if (missing.isEmpty()) {
+            return;
+        }
+        log.info("Recounting statistics for {} sites without counters", missing.size());
+        Thread counter = new Thread(() -> missing.forEach(siteStatsTracker::recount), "site-stats-recount");
+        counter.setDaemon(true);
+        counter.start();
+    }
+
+    @Override
+    public StatisticsResponse recount() {
+        siteRepository.findAll().forEach(site -> siteStatsTracker.recount(site.getId()));
+        return getStatistics();
+    }
 
     @Override
     public StatisticsResponse getStatistics() {
-        // Получаем все сайты из БД
+        // Получаем все сайты из БД и их счётчики
         List<Site> sites = siteRepository.findAll();
+        Map<Integer, Counts> counts = siteStatsTracker.counts();
 
         // Формируем общую статистику
         int totalSites = sites.size();
-        int totalPages = (int) pageRepository.count();
-        int totalLemmas = (int) lemmaRepository.count();
+        long totalPages = 0;
+        long totalLemmas = 0;
+        for (Site site : sites) {
+            Counts siteCounts = counts.getOrDefault(site.getId(), NO_COUNTS);
+            totalPages += siteCounts.pages();
+            totalLemmas += siteCounts.lemmas();
+        }
         boolean indexingInProgress = sites.stream()
                 .anyMatch(site -> site.getStatus() == SiteStatus.INDEXING);
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(totalSites);
-        total.setPages(totalPages);
-        total.setLemmas(totalLemmas);
+        total.setPages((int) totalPages);
+        total.setLemmas((int) totalLemmas);
         total.setIndexing(indexingInProgress);
 
         // Формируем детальную статистику по каждому сайту
@@ -61,9 +99,10 @@ public class StatisticsServiceImpl implements StatisticsService {
                 item.setError(site.getLastError());
             }
 
-            // Считаем количество страниц и лемм для данного сайта
-            item.setPages(pageRepository.countBySiteId(site.getId()));
-            item.setLemmas(lemmaRepository.countBySiteId(site.getId()));
+            // Количество страниц и лемм для данного сайта — из счётчиков
+            Counts siteCounts = counts.getOrDefault(site.getId(), NO_COUNTS);
+            item.setPages((int) siteCounts.pages());
+            item.setLemmas((int) siteCounts.lemmas());
             return item;
         }).collect(Collectors.toList());
 
@@ -0,0 +1,147 @@
+package searchengine.services.impl;
+
+import searchengine.config.IndexingSettings;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Приводит ссылки сайта к одному виду, чтобы варианты одного адреса не загружались и не индексировались
+ * как разные страницы: схема и хост (с www или без, http или https) заменяются на те, что указаны
+ * в настройках сайта, отбрасываются #фрагмент, порт по умолчанию, сегменты "." и "..",
+ * параметры из indexing-settings.strip-query-params; остальные параметры сортируются,
+ * у непустого пути убирается завершающий "/" (если включено).
+ */
+public final class UrlNormalizer {
+    private final String scheme;
+    private final String host;
+    private final String bareHost;
+    private final List<String> stripExact = new ArrayList<>();
+    private final List<String> stripPrefixes = new ArrayList<>();
+    private final boolean sortQuery;
+    private final boolean stripTrailingSlash;
+
+    public UrlNormalizer(String siteUrl, IndexingSettings settings) {
+        URI site = URI.create(siteUrl.trim());
+        this.scheme = site.getScheme().toLowerCase(Locale.ROOT);
+        this.host = site.getHost().toLowerCase(Locale.ROOT) + (site.getPort() == -1 ? "" : ":" + site.getPort());
+        this.bareHost = bareHost(site.getHost());
+        for (String param : settings.getStripQueryParams()) {
+            String name = param.toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                stripPrefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                stripExact.add(name);
+            }
+        }
+        this.sortQuery = settings.isSortQueryParams();
+        this.stripTrailingSlash = settings.isStripTrailingSlash();
+    }
+
+    /**
+     * @return канонический URL или null, если ссылка ведёт не на этот сайт или не по http(s)
+     */
+    public String normalize(String url) {
+        URI uri = parse(url);
+        if (uri == null || uri.getScheme() == null || uri.getHost() == null) {
+            return null;
+        }
+        String linkScheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!linkScheme.equals("http") && !linkScheme.equals("https")) {
+            return null;
+        }
+        if (!bareHost(uri.getHost()).equals(bareHost)) {
+            return null;
+        }
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (port == 80 && linkScheme.equals("http")) || (port == 443 && linkScheme.equals("https"));
+
+        StringBuilder sb = new StringBuilder(url.length());
+        sb.append(scheme).append("://").append(host);
+        if (!defaultPort && !host.endsWith(":" + port)) {
+            sb.append(':').append(port);
+        }
+        sb.append(path(uri));
+        String query = query(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            sb.append('?').append(query);
+        }
+        return sb.toString();
+    }
+
+    private String path(URI uri) {
+        String path = uri.normalize().getRawPath();
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        // normalize() оставляет ".." в начале пути
+        while (path.startsWith("/../")) {
+            path = path.substring(3);
+        }
+        if (stripTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private String query(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isStripped(name)) {
+                params.add(param);
+            }
+        }
+        if (sortQuery) {
+            params.sort(null);
+        }
+        return String.join("&", params);
+    }
+
+    private boolean isStripped(String name) {
+        if (stripExact.contains(name)) {
+            return true;
+        }
+        for (String prefix : stripPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String bareHost(String host) {
+        String h = host.toLowerCase(Locale.ROOT);
+        if (h.endsWith(".")) {
+            h = h.substring(0, h.length() - 1);
+        }
+        return h.startsWith("www.") ? h.substring(4) : h;
+    }
+
+    /** Ссылки из HTML бывают с пробелами и кириллицей без кодирования: их URI разбирается через URL */
+    private static URI parse(String url) {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            try {
+                URL parsed = new URL(url);
+                return new URI(parsed.getProtocol(), parsed.getUserInfo(), parsed.getHost(), parsed.getPort(),
+                        parsed.getPath(), parsed.getQuery(), null);
+            } catch (MalformedURLException | URISyntaxException ex) {
+                return null;
+            }
+        }
+    }
+}
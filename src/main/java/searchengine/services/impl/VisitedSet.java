@@ -0,0 +1,46 @@
+package searchengine.services.impl;
+
+import searchengine.config.SiteConfig;
+import searchengine.dto.crawler.FrontierEntry;
+
+/**
+ * Множество URL, уже встреченных при обходе сайта. Вызывается из всех потоков краулера.
+ * Реализация выбирается настройкой сайта visited-set:
+ * <ul>
+ *   <li>EXACT — сами строки URL (как раньше), память растёт с длиной URL;</li>
+ *   <li>FINGERPRINT — 64-битные отпечатки в открытой адресации, ~16 байт на URL;
+ *       вероятность ложного совпадения на миллионе URL порядка 10^-8;</li>
+ *   <li>BLOOM — масштабируемый фильтр Блума: ~1–2 байта на URL при заданной доле ложных
+ *       срабатываний (такие URL считаются встреченными и не обходятся).</li>
+ * </ul>
+ */
+public interface VisitedSet {
+    /** Добавляет URL; false, если он уже встречался (для BLOOM — возможно, ложно) */
+    default boolean add(String url) {
+        return addFingerprint(FrontierEntry.fingerprint(url));
+    }
+
+    /**
+     * Добавляет URL по его отпечатку {@link FrontierEntry#fingerprint} — так восстанавливаются
+     * обработанные URL прерванного обхода, для которых в frontier_url хранится только отпечаток.
+     * Вызывается до начала обхода, пока строкой не добавлено ни одного URL.
+     */
+    boolean addFingerprint(long fingerprint);
+
+    /** Сколько URL добавлено */
+    long size();
+
+    /** Занимаемая память в байтах (для EXACT — оценка) */
+    long memoryBytes();
+
+    enum Type { EXACT, FINGERPRINT, BLOOM }
+
+    static VisitedSet forSite(SiteConfig siteConfig) {
+        int expected = Math.max(1024, siteConfig.getVisitedExpectedUrls());
+        return switch (siteConfig.getVisitedSet()) {
+            case EXACT -> new ExactVisitedSet();
+            case FINGERPRINT -> new FingerprintVisitedSet(expected);
+            case BLOOM -> new BloomVisitedSet(expected, siteConfig.getVisitedFalsePositiveRate());
+        };
+    }
+}
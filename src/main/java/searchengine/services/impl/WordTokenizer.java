@@ -0,0 +1,146 @@
+package searchengine.services.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Однопроходный разбор текста на слова для лемматизатора.
+ * За один просмотр символов пропускает HTML-теги (как регулярное выражение {@code <[^>]+>}),
+ * но тегом считается только отрезок не длиннее {@link #MAX_TAG_LENGTH} символов: иначе незакрытая '<'
+ * заставила бы держать в буфере весь оставшийся текст страницы. Более длинный отрезок — обычный текст.
+ * приводит буквы к нижнему регистру и собирает слова из букв a-z и а-яё во внутренний буфер,
+ * без копий текста и регулярных выражений. Для каждого слова вызывается {@link TokenConsumer}
+ * с буфером, длиной и признаком «только кириллица»; буфер переиспользуется, поэтому
+ * получатель должен скопировать слово, если оно нужно ему после вызова.
+ */
+public final class WordTokenizer {
+    private static final int READ_CHUNK = 8192;
+    /** Наибольшая длина содержимого тега; с запасом покрывает длинные атрибуты вроде data:-ссылок */
+    static final int MAX_TAG_LENGTH = 1 << 16;
+
+    /** Получатель слов */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void token(char[] buf, int length, boolean cyrillic);
+    }
+
+    private final TokenConsumer consumer;
+    private char[] word = new char[32];
+    private int wordLength;
+    private boolean cyrillic = true;
+    // содержимое открытого тега: если '>' так и не встретится, это был обычный текст
+    private final StringBuilder tag = new StringBuilder();
+    private boolean inTag;
+
+    private WordTokenizer(TokenConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    public static void tokenize(CharSequence text, TokenConsumer consumer) {
+        WordTokenizer tokenizer = new WordTokenizer(consumer);
+        for (int i = 0, n = text.length(); i < n; i++) {
+            tokenizer.feed(text.charAt(i));
+        }
+        tokenizer.finish();
+    }
+
+    /** Читает текст порциями, не загружая его в память целиком; Reader не закрывается */
+    public static void tokenize(Reader reader, TokenConsumer consumer) throws IOException {
+        WordTokenizer tokenizer = new WordTokenizer(consumer);
+        char[] chunk = new char[READ_CHUNK];
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                tokenizer.feed(chunk[i]);
+            }
+        }
+        tokenizer.finish();
+    }
+
+    private void feed(char c) {
+        if (inTag) {
+            if (c == '>' && !tag.isEmpty()) {
+                // тег закончился: он, как и пробел, разделяет слова
+                inTag = false;
+                tag.setLength(0);
+            } else if (c == '>') {
+                // "<>" тегом не считается
+                inTag = false;
+                text(c);
+            } else if (tag.length() < MAX_TAG_LENGTH) {
+                tag.append(c);
+            } else {
+                // слишком длинный отрезок тегом не считается
+                releaseTag();
+                feed(c);
+            }
+            return;
+        }
+        if (c == '<') {
+            endWord();
+            inTag = true;
+            return;
+        }
+        text(c);
+    }
+
+    private void text(char c) {
+        if (c >= 'a' && c <= 'z') {
+            append(c, false);
+        } else if (c >= 'A' && c <= 'Z') {
+            append((char) (c + ('a' - 'A')), false);
+        } else if (c >= 'а' && c <= 'я' || c == 'ё') {
+            append(c, true);
+        } else if (c >= 'А' && c <= 'Я') {
+            append((char) (c + ('а' - 'А')), true);
+        } else if (c == 'Ё') {
+            append('ё', true);
+        } else if (c < 0x80) {
+            endWord();
+        } else {
+            // редкие символы, которые в нижнем регистре становятся буквой a-z (например, знак кельвина)
+            char lower = Character.toLowerCase(c);
+            if (lower != c && (lower >= 'a' && lower <= 'z' || lower >= 'а' && lower <= 'я' || lower == 'ё')) {
+                text(lower);
+            } else {
+                endWord();
+            }
+        }
+    }
+
+    private void append(char c, boolean cyrillicLetter) {
+        if (wordLength == word.length) {
+            char[] grown = new char[word.length * 2];
+            System.arraycopy(word, 0, grown, 0, wordLength);
+            word = grown;
+        }
+        word[wordLength++] = c;
+        cyrillic &= cyrillicLetter;
+    }
+
+    private void endWord() {
+        if (wordLength > 0) {
+            consumer.token(word, wordLength, cyrillic);
+            wordLength = 0;
+        }
+        cyrillic = true;
+    }
+
+    private void finish() {
+        if (inTag) {
+            // незакрытый '<': и он сам, и всё после него — обычный текст
+            releaseTag();
+        }
+        endWord();
+    }
+
+    /** Отдаёт '<' и накопленное содержимое тега как обычный текст */
+    private void releaseTag() {
+        inTag = false;
+        endWord();
+        for (int i = 0; i < tag.length(); i++) {
+            text(tag.charAt(i));
+        }
+        tag.setLength(0);
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.util;
+
+/**
+ * 64-битный хеш строки: FNV-1a по символам с перемешиванием из MurmurHash3 (fmix64),
+ * после которого все биты результата зависят от всех символов.
+ * Значения сохраняются в БД (frontier_url.url_hash), поэтому алгоритм менять нельзя.
+ */
+public final class StringHash {
+    private StringHash() {
+    }
+
+    public static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,140 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path path = dir.resolve("1.seg");
+        try (SegmentWriter writer = new SegmentWriter(path, 7)) {
+            writer.addLemma(3, snapshot(new int[]{1, 5, 300}, new float[]{0.5f, 1, 2.5f}));
+            writer.addLemma(4, PostingList.EMPTY);
+            writer.addLemma(10, snapshot(new int[]{5}, new float[]{3}));
+            writer.finish(new int[]{1, 5, 300}, 3);
+        }
+
+        Segment segment = Segment.open(path);
+
+        assertThat(segment.getSiteId()).isEqualTo(7);
+        // пустой список леммы 4 не записан
+        assertThat(segment.lemmaCount()).isEqualTo(2);
+        assertThat(segment.pageCount()).isEqualTo(3);
+        assertThat(segment.pageIds()).containsExactly(1, 5, 300);
+        assertThat(segment.lemmaIdAt(1)).isEqualTo(10);
+        assertSnapshot(segment.postings(3), new int[]{1, 5, 300}, new float[]{0.5f, 1, 2.5f});
+        assertSnapshot(segment.postingsAt(1), new int[]{5}, new float[]{3});
+        assertThat(segment.postings(4).size()).isZero();
+        assertThat(segment.postings(11).size()).isZero();
+    }
+
+    @Test
+    void readsValuesSplitAcrossChunks() throws IOException {
+        Random random = new Random(42);
+        Path path = dir.resolve("2.seg");
+        int[][] pages = new int[50][];
+        float[][] ranks = new float[50][];
+        int[] all = new int[0];
+        try (SegmentWriter writer = new SegmentWriter(path, 1)) {
+            for (int lemma = 0; lemma < pages.length; lemma++) {
+                int count = 1 + random.nextInt(20);
+                pages[lemma] = new int[count];
+                ranks[lemma] = new float[count];
+                int pageId = 0;
+                for (int i = 0; i < count; i++) {
+                    // большие разности дают varint из нескольких байт
+                    pageId += 1 + random.nextInt(1 << 20);
+                    pages[lemma][i] = pageId;
+                    ranks[lemma][i] = random.nextFloat();
+                }
+                writer.addLemma(lemma * 2, snapshot(pages[lemma], ranks[lemma]));
+                all = SiteIndex.unionSorted(all, pages[lemma]);
+            }
+            writer.finish(all, all.length);
+        }
+
+        // куски по 16 и 8 байт: int, long и varint то и дело лежат на стыке, смещения выходят за первый кусок
+        for (int chunkBits : new int[]{3, 4, Segment.CHUNK_BITS}) {
+            Segment segment = Segment.open(path, chunkBits);
+            assertThat(segment.lemmaCount()).isEqualTo(pages.length);
+            assertThat(segment.pageIds()).containsExactly(all);
+            for (int lemma = 0; lemma < pages.length; lemma++) {
+                assertSnapshot(segment.postings(lemma * 2), pages[lemma], ranks[lemma]);
+            }
+        }
+    }
+
+    @Test
+    void finishReplacesExistingFileAtomically() throws IOException {
+        Path path = dir.resolve("3.seg");
+        write(path, 1, 1);
+        Segment old = Segment.open(path);
+
+        write(path, 2, 9);
+
+        assertThat(Segment.open(path).pageIds()).containsExactly(9);
+        // старое отображение продолжает читать прежние данные
+        assertThat(old.pageIds()).containsExactly(1);
+        assertThat(Files.exists(dir.resolve("3.seg.tmp"))).isFalse();
+    }
+
+    @Test
+    void closeWithoutFinishLeavesNoFiles() throws IOException {
+        Path path = dir.resolve("4.seg");
+        try (SegmentWriter writer = new SegmentWriter(path, 1)) {
+            writer.addLemma(1, snapshot(new int[]{1}, new float[]{1}));
+        }
+
+        assertThat(Files.exists(path)).isFalse();
+        assertThat(Files.exists(dir.resolve("4.seg.tmp"))).isFalse();
+    }
+
+    @Test
+    void rejectsLemmasOutOfOrder() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("5.seg"), 1)) {
+            writer.addLemma(5, snapshot(new int[]{1}, new float[]{1}));
+
+            assertThatThrownBy(() -> writer.addLemma(5, snapshot(new int[]{2}, new float[]{1})))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path path = dir.resolve("6.seg");
+        Files.write(path, new byte[64]);
+
+        assertThatThrownBy(() -> Segment.open(path)).isInstanceOf(IOException.class);
+    }
+
+    private static void write(Path path, int lemmaId, int pageId) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(path, 1)) {
+            writer.addLemma(lemmaId, snapshot(new int[]{pageId}, new float[]{1}));
+            writer.finish(new int[]{pageId}, 1);
+        }
+    }
+
+    private static PostingList.Snapshot snapshot(int[] pageIds, float[] ranks) {
+        return new PostingList.Snapshot(pageIds, ranks, pageIds.length);
+    }
+
+    private static void assertSnapshot(PostingList.Snapshot actual, int[] pageIds, float[] ranks) {
+        assertThat(actual.size()).isEqualTo(pageIds.length);
+        for (int i = 0; i < pageIds.length; i++) {
+            assertThat(actual.pageIds()[i]).isEqualTo(pageIds[i]);
+            assertThat(actual.ranks()[i]).isEqualTo(ranks[i]);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimHashIndexTest {
+
+    @Test
+    void neighbourWithinDistanceIsFound() {
+        SimHashIndex index = new SimHashIndex(3);
+        long hash = 0x0123_4567_89ab_cdefL;
+        index.put(1, hash);
+
+        // биты из разных блоков: совпадает только один блок из четырёх
+        long near = hash ^ (1L | 1L << 20 | 1L << 40);
+        SimHashIndex.Entry found = index.claim(near);
+
+        assertThat(found).isNotNull();
+        assertThat(found.pageId()).isEqualTo(1);
+        assertThat(found.hash()).isEqualTo(hash);
+    }
+
+    @Test
+    void hashBeyondDistanceIsClaimed() {
+        SimHashIndex index = new SimHashIndex(3);
+        long hash = 0x0123_4567_89ab_cdefL;
+        index.put(1, hash);
+
+        assertThat(index.claim(hash ^ 0xfL)).isNull();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void claimedHashBlocksNeighbourUntilReleased() {
+        SimHashIndex index = new SimHashIndex(3);
+        long hash = 0x7777_0000_ffff_1234L;
+
+        assertThat(index.claim(hash)).isNull();
+        // страница ещё не записана, но её почти точная копия уже отклоняется
+        SimHashIndex.Entry pending = index.claim(hash ^ 1);
+        assertThat(pending).isNotNull();
+        assertThat(pending.pageId()).isZero();
+
+        index.release(hash);
+        assertThat(index.size()).isZero();
+        assertThat(index.claim(hash ^ 1)).isNull();
+    }
+
+    @Test
+    void assignedPageCanBeRemoved() {
+        SimHashIndex index = new SimHashIndex(3);
+        long hash = 0x1234_5678_9abc_def0L;
+        index.claim(hash);
+        index.assign(hash, 42);
+
+        assertThat(index.claim(hash).pageId()).isEqualTo(42);
+
+        index.removePage(42);
+        assertThat(index.size()).isZero();
+        assertThat(index.claim(hash)).isNull();
+    }
+
+    @Test
+    void agreesWithLinearScan() {
+        int maxDistance = 3;
+        SimHashIndex index = new SimHashIndex(maxDistance);
+        List<Long> stored = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            long hash = random.nextLong();
+            if (i % 2 == 1) {
+                // половина — соседи уже добавленных отпечатков на расстоянии 0..6
+                hash = stored.get(random.nextInt(stored.size()));
+                for (int flips = random.nextInt(7); flips > 0; flips--) {
+                    hash ^= 1L << random.nextInt(64);
+                }
+            }
+            boolean expectedNear = false;
+            for (long other : stored) {
+                if (SimHash.distance(other, hash) <= maxDistance) {
+                    expectedNear = true;
+                    break;
+                }
+            }
+            SimHashIndex.Entry near = index.claim(hash);
+            assertThat(near != null).isEqualTo(expectedNear);
+            if (near == null) {
+                stored.add(hash);
+            } else {
+                assertThat(SimHash.distance(near.hash(), hash)).isLessThanOrEqualTo(maxDistance);
+            }
+        }
+        assertThat(index.size()).isEqualTo(stored.size());
+    }
+
+    @Test
+    void distanceOutsideRangeIsRejected() {
+        assertThatThrownBy(() -> new SimHashIndex(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SimHashIndex(16)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,97 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SiteIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pagesRemovedFromMemoryLeaveNoTombstones() {
+        SiteIndex index = new SiteIndex(1);
+        index.addPage(1, Map.of(10, 1f));
+        index.addPage(2, Map.of(10, 2f));
+
+        index.removePages(List.of(1));
+
+        assertThat(index.deletedPages()).isEmpty();
+        assertThat(index.postings(10).pageIds()).startsWith(2);
+        assertThat(index.postings(10).size()).isEqualTo(1);
+    }
+
+    @Test
+    void tombstonesHideSegmentPagesUntilMerge() throws IOException {
+        SiteIndex index = new SiteIndex(1);
+        Segment segment = segment("1.seg", 1, 2, 3, 4);
+        index.addSegments(List.of(segment));
+
+        index.removePages(List.of(3, 1));
+        index.removePages(List.of(3));
+
+        assertThat(index.deletedPages()).containsExactly(1, 3);
+        PostingList.Snapshot postings = index.postings(10);
+        assertThat(postings.size()).isEqualTo(2);
+        assertThat(postings.pageIds()).startsWith(2, 4);
+
+        Segment merged = segment("2.seg", 2, 4);
+        index.replaceSegments(List.of(segment), merged, new int[]{1, 3});
+
+        assertThat(index.deletedPages()).isEmpty();
+        assertThat(index.getSegments()).containsExactly(merged);
+    }
+
+    @Test
+    void mergeRequestedOnceWhenDeletedRatioExceeded() throws IOException {
+        SiteIndex index = new SiteIndex(1);
+        index.addSegments(List.of(segment("1.seg", 1, 2, 3, 4)));
+
+        index.removePages(List.of(1));
+        assertThat(index.needsMerge(4, 0.25)).isFalse();
+
+        index.removePages(List.of(2));
+        assertThat(index.deletedRatio()).isEqualTo(0.5);
+        assertThat(index.needsMerge(4, 0.25)).isTrue();
+        assertThat(index.needsMerge(4, 0.25)).isFalse();
+
+        index.mergeFinished();
+        assertThat(index.needsMerge(4, 0.25)).isTrue();
+    }
+
+    @Test
+    void withoutSkipsDeletedPages() {
+        PostingList.Snapshot s = new PostingList.Snapshot(new int[]{1, 3, 5, 7, 0}, new float[]{1, 3, 5, 7, 0}, 4);
+
+        PostingList.Snapshot result = SiteIndex.without(s, new int[]{0, 3, 7, 100});
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.pageIds()).startsWith(1, 5);
+        assertThat(result.ranks()).startsWith(1, 5);
+        assertThat(SiteIndex.without(s, new int[]{8, 9})).isSameAs(s);
+    }
+
+    @Test
+    void unionSortedDropsDuplicates() {
+        assertThat(SiteIndex.unionSorted(new int[]{1, 4, 6}, new int[]{2, 4, 7}))
+                .containsExactly(1, 2, 4, 6, 7);
+        assertThat(SiteIndex.unionSorted(new int[0], new int[]{3})).containsExactly(3);
+    }
+
+    private Segment segment(String name, int... pageIds) throws IOException {
+        Path path = dir.resolve(name);
+        float[] ranks = new float[pageIds.length];
+        try (SegmentWriter writer = new SegmentWriter(path, 1)) {
+            writer.addLemma(10, new PostingList.Snapshot(pageIds, ranks, pageIds.length));
+            writer.finish(pageIds, pageIds.length);
+        }
+        return Segment.open(path);
+    }
+}
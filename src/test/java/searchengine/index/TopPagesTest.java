@@ -0,0 +1,84 @@
+package searchengine.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopPagesTest {
+
+    @Test
+    void keepsBestPagesByRelativeRelevance() {
+        TopPages<String> top = new TopPages<>(3);
+        // релевантность делится на максимум своего сайта: 10/10 у "a" и 2/2 у "b" равны
+        top.addAll("a", scores(new int[]{1, 2, 3}, new float[]{10, 5, 1}));
+        top.addAll("b", scores(new int[]{4, 5}, new float[]{2, 1.5f}));
+
+        List<TopPages.Hit<String>> best = top.sorted();
+
+        assertThat(top.matched()).isEqualTo(5);
+        assertThat(best).extracting(TopPages.Hit::pageId).containsExactly(1, 4, 5);
+        assertThat(best.get(2).relevance()).isEqualTo(0.75f);
+        assertThat(best.get(2).owner()).isEqualTo("b");
+    }
+
+    @Test
+    void zeroLimitOnlyCounts() {
+        TopPages<String> top = new TopPages<>(0);
+        top.addAll("a", scores(new int[]{1, 2}, new float[]{1, 2}));
+
+        assertThat(top.matched()).isEqualTo(2);
+        assertThat(top.sorted()).isEmpty();
+    }
+
+    @Test
+    void tiesDoNotDependOnArrivalOrder() {
+        // все страницы равны по релевантности: остаются страницы с меньшими id при любом порядке сайтов
+        PageScores first = scores(new int[]{5, 6}, new float[]{1, 1});
+        PageScores second = scores(new int[]{1, 2}, new float[]{1, 1});
+        TopPages<String> forward = new TopPages<>(2);
+        forward.addAll("a", first);
+        forward.addAll("b", second);
+        TopPages<String> backward = new TopPages<>(2);
+        backward.addAll("b", second);
+        backward.addAll("a", first);
+
+        assertThat(forward.sorted()).extracting(TopPages.Hit::pageId).containsExactly(1, 2);
+        assertThat(backward.sorted()).isEqualTo(forward.sorted());
+    }
+
+    @Test
+    void mergeEqualsSortingAllHits() {
+        Random random = new Random(3);
+        List<List<TopPages.Hit<Integer>>> lists = new ArrayList<>();
+        List<TopPages.Hit<Integer>> all = new ArrayList<>();
+        for (int site = 0; site < 5; site++) {
+            TopPages<Integer> top = new TopPages<>(50);
+            int pages = site == 2 ? 0 : 1 + random.nextInt(40);
+            int[] ids = new int[pages];
+            float[] scores = new float[pages];
+            for (int i = 0; i < pages; i++) {
+                ids[i] = site * 1000 + i;
+                // с повторами: у страниц одного сайта бывает равная релевантность
+                scores[i] = 1 + random.nextInt(8);
+            }
+            top.addAll(site, scores(ids, scores));
+            lists.add(top.sorted());
+            all.addAll(top.sorted());
+        }
+        all.sort(Comparator.<TopPages.Hit<Integer>>comparingDouble(TopPages.Hit::relevance).reversed()
+                .thenComparingInt(TopPages.Hit::pageId));
+
+        assertThat(TopPages.merge(lists, 30)).isEqualTo(all.subList(0, 30));
+        assertThat(TopPages.merge(lists, 1000)).isEqualTo(all);
+        assertThat(TopPages.merge(List.of(), 10)).isEmpty();
+    }
+
+    private static PageScores scores(int[] pageIds, float[] scores) {
+        return new PageScores(pageIds, scores, pageIds.length);
+    }
+}
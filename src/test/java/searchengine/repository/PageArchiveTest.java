@@ -0,0 +1,140 @@
+package searchengine.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.IndexingSettings;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private final Site site = Site.builder().id(3).build();
+    private IndexingSettings settings;
+    private PageArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        settings = new IndexingSettings();
+        settings.setArchiveDir(dir.toString());
+        settings.setArchiveFileMaxBytes(1000);
+        archive = new PageArchive(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        archive.close();
+    }
+
+    @Test
+    void readsBackPagesAcrossFileRollOver() {
+        List<Page> pages = new ArrayList<>();
+        List<String> html = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            // случайные буквы почти не сжимаются: запись ~300 байт, в файл помещается три
+            String content = "<p>" + randomText(random, 400) + "</p>";
+            html.add(content);
+            pages.add(store(content));
+        }
+
+        int lastFile = pages.get(pages.size() - 1).getArchiveFile();
+        assertThat(lastFile).isGreaterThan(2);
+        assertThat(pages).allSatisfy(page -> assertThat(page.getContent()).isEmpty());
+        // закрытые файлы читаются через отображение, текущий — позиционным чтением
+        for (int i = 0; i < pages.size(); i++) {
+            assertThat(archive.content(pages.get(i))).isEqualTo(html.get(i));
+        }
+
+        // после перезапуска запись продолжается в последний файл, прежние записи читаются
+        archive.close();
+        archive = new PageArchive(settings);
+        Page next = store("после перезапуска");
+        assertThat(next.getArchiveFile()).isGreaterThanOrEqualTo(lastFile);
+        assertThat(archive.content(next)).isEqualTo("после перезапуска");
+        assertThat(archive.content(pages.get(0))).isEqualTo(html.get(0));
+        assertThat(archive.content(pages.get(pages.size() - 1))).isEqualTo(html.get(html.size() - 1));
+    }
+
+    @Test
+    void pageWithoutPointerKeepsColumnContent() {
+        Page page = new Page();
+        page.setSite(site);
+        page.setContent("<html></html>");
+
+        assertThat(archive.content(page)).isEqualTo("<html></html>");
+    }
+
+    @Test
+    void detectsChecksumMismatch() throws IOException {
+        Page page = store("<p>текст страницы</p>");
+        archive.close();
+        try (RandomAccessFile file = new RandomAccessFile(file(page).toFile(), "rw")) {
+            // crc32 — третье поле заголовка
+            long crcPos = page.getArchiveOffset() + 8;
+            file.seek(crcPos);
+            int crc = file.readInt();
+            file.seek(crcPos);
+            file.writeInt(crc ^ 1);
+        }
+        archive = new PageArchive(settings);
+
+        assertThatThrownBy(() -> archive.content(page))
+                .isInstanceOf(UncheckedIOException.class)
+                .getCause().hasMessageContaining("Checksum mismatch");
+    }
+
+    @Test
+    void detectsShortAndMisplacedRecords() {
+        Page page = store("<p>" + "текст ".repeat(50) + "</p>");
+
+        assertThatThrownBy(() -> archive.read(site.getId(), page.getArchiveFile(),
+                page.getArchiveOffset(), page.getArchiveLength() - 5))
+                .isInstanceOf(UncheckedIOException.class)
+                .getCause().hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> archive.read(site.getId(), page.getArchiveFile(),
+                page.getArchiveOffset() + 1, page.getArchiveLength() - 1))
+                .isInstanceOf(UncheckedIOException.class)
+                .getCause().hasMessageContaining("No archive record");
+        assertThatThrownBy(() -> archive.read(site.getId(), page.getArchiveFile(),
+                page.getArchiveOffset(), page.getArchiveLength() + 100))
+                .isInstanceOf(UncheckedIOException.class)
+                .getCause().hasMessageContaining("Unexpected end");
+    }
+
+    private Page store(String content) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath("/" + content.hashCode());
+        page.setContent(content);
+        archive.store(page);
+        return page;
+    }
+
+    private Path file(Page page) {
+        return dir.resolve("site-" + site.getId()).resolve(String.format("%06d.arc", page.getArchiveFile()));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomVisitedSetTest {
+
+    @Test
+    void addedUrlIsAlwaysSeen() {
+        BloomVisitedSet visited = new BloomVisitedSet(1_000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            visited.add("https://example.com/page/" + i);
+        }
+        // у фильтра Блума не бывает ложноотрицательных ответов, в том числе после добавления новых фильтров
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(visited.add("https://example.com/page/" + i)).isFalse();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysBoundedAcrossChainedFilters() {
+        double rate = 0.01;
+        BloomVisitedSet visited = new BloomVisitedSet(1_000, rate);
+        long singleFilterBytes = visited.memoryBytes();
+        int inserted = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (visited.add("https://example.com/page/" + i)) {
+                inserted++;
+            }
+        }
+        // в 100 раз больше ожидаемого: цепочка из нескольких фильтров растущей ёмкости
+        assertThat(visited.memoryBytes()).isGreaterThan(16 * singleFilterBytes);
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (!visited.add("https://example.com/other/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(rate * 1.5);
+        assertThat(inserted + probes - falsePositives).isEqualTo(visited.size());
+    }
+
+    @Test
+    void rateOutsideUnitIntervalIsRejected() {
+        assertThatThrownBy(() -> new BloomVisitedSet(1_000, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomVisitedSet(1_000, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
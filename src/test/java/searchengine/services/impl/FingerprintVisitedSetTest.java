@@ -0,0 +1,48 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintVisitedSetTest {
+
+    @Test
+    void repeatedUrlIsNotAddedTwice() {
+        FingerprintVisitedSet visited = new FingerprintVisitedSet(16);
+
+        assertThat(visited.add("https://example.com/a")).isTrue();
+        assertThat(visited.add("https://example.com/a")).isFalse();
+        assertThat(visited.add("https://example.com/b")).isTrue();
+        assertThat(visited.size()).isEqualTo(2);
+    }
+
+    @Test
+    void growthKeepsEveryUrl() {
+        // начальная таблица на 16 URL удваивается много раз; после каждого rehash старые отпечатки должны находиться
+        FingerprintVisitedSet visited = new FingerprintVisitedSet(16);
+        long initialBytes = visited.memoryBytes();
+        int urls = 200_000;
+        for (int i = 0; i < urls; i++) {
+            assertThat(visited.add("https://example.com/page/" + i)).isTrue();
+        }
+        for (int i = 0; i < urls; i++) {
+            assertThat(visited.add("https://example.com/page/" + i)).isFalse();
+        }
+
+        assertThat(visited.size()).isEqualTo(urls);
+        assertThat(visited.memoryBytes()).isGreaterThan(initialBytes);
+        // заполнение не больше 2/3 и не меньше 1/3 после удвоения: 12–24 байта на URL
+        assertThat((double) visited.memoryBytes() / urls).isBetween(12.0, 24.0);
+    }
+
+    @Test
+    void expectedSizeAvoidsGrowth() {
+        FingerprintVisitedSet visited = new FingerprintVisitedSet(10_000);
+        long initialBytes = visited.memoryBytes();
+        for (int i = 0; i < 10_000; i++) {
+            visited.add("https://example.com/" + i);
+        }
+
+        assertThat(visited.memoryBytes()).isEqualTo(initialBytes);
+    }
+}
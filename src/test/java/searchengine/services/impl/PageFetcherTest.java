@@ -0,0 +1,200 @@
+package searchengine.services.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.FetcherSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PageFetcherTest {
+    private static final String HTML = "<html><head><title>Тест</title></head><body>" + "страница ".repeat(200) + "</body></html>";
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private FetcherSettings settings;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/plain", exchange -> send(exchange, 200, null, HTML.getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/gzip", exchange -> send(exchange, 200, "gzip", gzip(HTML.getBytes(StandardCharsets.UTF_8))));
+        server.createContext("/deflate", exchange -> send(exchange, 200, "deflate", deflate(HTML.getBytes(StandardCharsets.UTF_8))));
+        server.createContext("/bomb", exchange -> send(exchange, 200, "gzip", gzip(new byte[1024 * 1024])));
+        server.createContext("/etag", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                send(exchange, 200, null, HTML.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            // заголовки и начало тела, затем сервер замолкает
+            exchange.sendResponseHeaders(200, 100_000);
+            OutputStream out = exchange.getResponseBody();
+            out.write(new byte[100]);
+            out.flush();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        settings = new FetcherSettings();
+        settings.setRequestTimeoutMs(5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void compressedBodyIsDecoded() throws IOException {
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        PageFetcher.Response gzip = fetcher.fetch(url("/gzip"), Map.of());
+        PageFetcher.Response deflate = fetcher.fetch(url("/deflate"), Map.of());
+
+        assertThat(gzip.statusCode()).isEqualTo(200);
+        assertThat(new String(gzip.body(), StandardCharsets.UTF_8)).isEqualTo(HTML);
+        assertThat(new String(deflate.body(), StandardCharsets.UTF_8)).isEqualTo(HTML);
+    }
+
+    @Test
+    void conditionalHeadersAreSent() throws IOException {
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        PageFetcher.Response first = fetcher.fetch(url("/etag"), Map.of());
+        PageFetcher.Response second = fetcher.fetch(url("/etag"), Map.of("If-None-Match", first.header("ETag")));
+
+        assertThat(first.header("ETag")).isEqualTo("\"v1\"");
+        assertThat(second.statusCode()).isEqualTo(304);
+        assertThat(second.body()).isEmpty();
+    }
+
+    @Test
+    void bodyOverLimitIsRejected() {
+        settings.setMaxBodyBytes(1024);
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> fetcher.fetch(url("/plain"), Map.of()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds");
+    }
+
+    @Test
+    void limitAppliesAfterDecompression() {
+        // 1 МБ нулей сжимается до пары килобайт
+        settings.setMaxBodyBytes(64 * 1024);
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> fetcher.fetch(url("/bomb"), Map.of()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds");
+    }
+
+    @Test
+    void failedRequestReleasesItsSlot() {
+        settings.setMaxInFlight(1);
+        settings.setMaxBodyBytes(1024);
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 3; i++) {
+                assertThatThrownBy(() -> fetcher.fetch(url("/plain"), Map.of())).isInstanceOf(IOException.class);
+            }
+            assertThat(fetcher.fetch(url("/etag"), Map.of("If-None-Match", "\"v1\"")).statusCode()).isEqualTo(304);
+        });
+    }
+
+    @Test
+    void stalledBodyTimesOut() {
+        settings.setRequestTimeoutMs(500);
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThatThrownBy(() -> fetcher.fetch(url("/stall"), Map.of()))
+                        .isInstanceOf(HttpTimeoutException.class));
+    }
+
+    @Test
+    void waitingForResponseIsInterruptible() throws InterruptedException {
+        settings.setRequestTimeoutMs(60_000);
+        PageFetcher fetcher = new PageFetcher(settings, new SimpleMeterRegistry());
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread crawler = new Thread(() -> {
+            try {
+                fetcher.fetch(url("/stall"), Map.of());
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        crawler.start();
+        Thread.sleep(300);
+        crawler.interrupt();
+        crawler.join(5000);
+
+        assertThat(crawler.isAlive()).isFalse();
+        assertThat(error.get()).isInstanceOf(InterruptedIOException.class);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void send(HttpExchange exchange, int status, String encoding, byte[] body) throws IOException {
+        if (encoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(data);
+        }
+        return out.toByteArray();
+    }
+}
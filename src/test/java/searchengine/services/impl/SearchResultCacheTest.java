@@ -0,0 +1,151 @@
+package searchengine.services.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResultItem;
+import searchengine.services.impl.SearchResultCache.Key;
+import searchengine.services.impl.SearchResultCache.Stamp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+    private static final String SITE_A = "https://a.example.com";
+    private static final String SITE_B = "https://b.example.com";
+
+    private SearchSettings settings;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        settings = new SearchSettings();
+        cache = new SearchResultCache(settings, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void keyDoesNotDependOnLemmaOrder() {
+        assertThat(Key.of(List.of("кот", "дом"), null, 0, 20)).isEqualTo(Key.of(List.of("дом", "кот"), null, 0, 20));
+        assertThat(Key.of(List.of("кот"), null, 0, 20)).isNotEqualTo(Key.of(List.of("кот"), null, 20, 20));
+        assertThat(Key.of(List.of("кот"), SITE_A, 0, 20)).isNotEqualTo(Key.of(List.of("кот"), null, 0, 20));
+    }
+
+    @Test
+    void storedResponseIsReturnedUntilItsSiteChanges() {
+        Key key = Key.of(List.of("кот"), SITE_A, 0, 20);
+        SearchResponse response = response(1);
+        cache.put(key, cache.stamp(), response);
+
+        assertThat(cache.get(key)).isSameAs(response);
+
+        // изменения другого сайта не касаются выдачи по SITE_A
+        cache.invalidateSite(SITE_B);
+        assertThat(cache.get(key)).isSameAs(response);
+
+        cache.invalidateSite(SITE_A);
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.stats().invalidations()).isEqualTo(1);
+        assertThat(cache.stats().entries()).isZero();
+    }
+
+    @Test
+    void searchOverAllSitesDependsOnEverySite() {
+        Key key = Key.of(List.of("кот"), null, 0, 20);
+        cache.put(key, cache.stamp(), response(1));
+
+        // сайт, которого не было при расчёте ответа, тоже делает его устаревшим
+        cache.invalidateSite(SITE_B);
+
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void responseComputedBeforeIndexChangeIsStale() {
+        Key key = Key.of(List.of("кот"), SITE_A, 0, 20);
+        Stamp before = cache.stamp();
+        // страница проиндексирована, пока считался ответ
+        cache.invalidateSite(SITE_A);
+        cache.put(key, before, response(1));
+
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void invalidateAllDropsEveryEntry() {
+        Key key = Key.of(List.of("кот"), SITE_A, 0, 20);
+        cache.put(key, cache.stamp(), response(1));
+
+        cache.invalidateAll();
+
+        assertThat(cache.stats().entries()).isZero();
+        assertThat(cache.stats().usedBytes()).isZero();
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        // ответ без страниц с одной леммой из одной буквы оценивается в 258 байт: помещаются четыре
+        settings.setResultCacheMaxBytes(1200);
+        Key[] keys = new Key[5];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Key.of(List.of(String.valueOf((char) ('a' + i))), null, 0, 20);
+        }
+        Stamp stamp = cache.stamp();
+        for (int i = 0; i < 4; i++) {
+            cache.put(keys[i], stamp, response(0));
+        }
+        cache.get(keys[0]);
+        cache.put(keys[4], stamp, response(0));
+
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+        assertThat(cache.stats().usedBytes()).isLessThanOrEqualTo(1200);
+        assertThat(cache.get(keys[1])).isNull();
+        assertThat(cache.get(keys[0])).isNotNull();
+        assertThat(cache.get(keys[4])).isNotNull();
+    }
+
+    @Test
+    void oversizedAndFailedResponsesAreNotCached() {
+        settings.setResultCacheMaxBytes(4096);
+        Key large = Key.of(List.of("кот"), null, 0, 20);
+        SearchResponse response = response(1);
+        response.getData().get(0).setSnippet("x".repeat(1000));
+        cache.put(large, cache.stamp(), response);
+
+        Key failed = Key.of(List.of("дом"), null, 0, 20);
+        SearchResponse error = new SearchResponse();
+        error.setResult(false);
+        error.setError("Задан пустой поисковый запрос");
+        cache.put(failed, cache.stamp(), error);
+
+        assertThat(cache.get(large)).isNull();
+        assertThat(cache.get(failed)).isNull();
+        assertThat(cache.stats().entries()).isZero();
+    }
+
+    @Test
+    void zeroSizeDisablesCache() {
+        settings.setResultCacheMaxBytes(0);
+        Key key = Key.of(List.of("кот"), null, 0, 20);
+        cache.put(key, cache.stamp(), response(1));
+
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get(key)).isNull();
+    }
+
+    private static SearchResponse response(int pages) {
+        SearchResponse response = new SearchResponse();
+        response.setResult(true);
+        response.setCount(pages);
+        List<SearchResultItem> data = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            data.add(new SearchResultItem(SITE_A, "A", "/page/" + i, "Кот", "<b>кот</b>", 1f));
+        }
+        response.setData(data);
+        return response;
+    }
+}
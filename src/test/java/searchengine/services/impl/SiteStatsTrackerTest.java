@@ -0,0 +1,102 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.repository.SiteStatsRepository;
+import searchengine.repository.SiteStatsRepository.Counts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SiteStatsTrackerTest {
+    private final FakeRepository repository = new FakeRepository();
+    private final SiteStatsTracker tracker = new SiteStatsTracker(repository);
+
+    @Test
+    void countsIncludeSitesWithoutSavedRow() {
+        repository.rows.put(1, new Counts(10, 5));
+        tracker.add(1, 2, 1);
+        tracker.add(2, 3, 4);
+
+        Map<Integer, Counts> counts = tracker.counts();
+
+        assertThat(counts).containsEntry(1, new Counts(12, 6)).containsEntry(2, new Counts(3, 4));
+        assertThat(repository.rows).doesNotContainKey(2);
+    }
+
+    @Test
+    void changesReachTableOnlyOnFlush() {
+        tracker.add(1, 1, 2);
+        assertThat(repository.rows).isEmpty();
+
+        tracker.flush(1);
+
+        assertThat(repository.rows).containsEntry(1, new Counts(1, 2));
+        assertThat(tracker.counts()).containsEntry(1, new Counts(1, 2));
+    }
+
+    @Test
+    void failedFlushKeepsChanges() {
+        tracker.add(1, 5, 1);
+        repository.failing = true;
+
+        tracker.flush(1);
+        assertThat(tracker.counts()).containsEntry(1, new Counts(5, 1));
+
+        repository.failing = false;
+        tracker.add(1, -1, 0);
+        tracker.flush(1);
+        assertThat(repository.rows).containsEntry(1, new Counts(4, 1));
+    }
+
+    @Test
+    void flushesAfterManyChanges() {
+        for (int i = 0; i < 1000; i++) {
+            tracker.add(1, 1, 0);
+        }
+
+        assertThat(repository.rows).containsEntry(1, new Counts(1000, 0));
+    }
+
+    @Test
+    void recountDropsUnsavedChanges() {
+        tracker.add(1, 7, 7);
+        repository.recounted = new Counts(3, 2);
+
+        tracker.recount(1);
+
+        assertThat(tracker.counts()).containsEntry(1, new Counts(3, 2));
+    }
+
+    /** site_stats в памяти */
+    private static class FakeRepository extends SiteStatsRepository {
+        final Map<Integer, Counts> rows = new HashMap<>();
+        boolean failing;
+        Counts recounted;
+
+        FakeRepository() {
+            super(null);
+        }
+
+        @Override
+        public void add(int siteId, long pages, long lemmas) {
+            if (failing) {
+                throw new IllegalStateException("database is down");
+            }
+            rows.merge(siteId, new Counts(pages, lemmas),
+                    (a, b) -> new Counts(a.pages() + b.pages(), a.lemmas() + b.lemmas()));
+        }
+
+        @Override
+        public Map<Integer, Counts> findAll() {
+            return new HashMap<>(rows);
+        }
+
+        @Override
+        public Counts recount(int siteId) {
+            rows.put(siteId, recounted);
+            return recounted;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.IndexingSettings;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlNormalizerTest {
+    private final UrlNormalizer normalizer = new UrlNormalizer("https://www.example.com", new IndexingSettings());
+
+    @Test
+    void schemeAndHostVariantsMapToSiteUrl() {
+        assertThat(normalizer.normalize("http://example.com/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://WWW.Example.COM/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://example.com.")).isEqualTo("https://www.example.com/");
+    }
+
+    @Test
+    void foreignHostsAndSchemesAreRejected() {
+        assertThat(normalizer.normalize("https://blog.example.com/a")).isNull();
+        assertThat(normalizer.normalize("https://example.org/a")).isNull();
+        assertThat(normalizer.normalize("mailto:info@example.com")).isNull();
+        assertThat(normalizer.normalize("javascript:void(0)")).isNull();
+        assertThat(normalizer.normalize("/relative/path")).isNull();
+    }
+
+    @Test
+    void defaultPortIsDroppedOtherPortKept() {
+        assertThat(normalizer.normalize("https://example.com:443/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("http://example.com:80/a")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://example.com:8443/a")).isEqualTo("https://www.example.com:8443/a");
+    }
+
+    @Test
+    void dotSegmentsAreResolved() {
+        assertThat(normalizer.normalize("https://example.com/a/b/../c/./d")).isEqualTo("https://www.example.com/a/c/d");
+        // ".." выше корня
+        assertThat(normalizer.normalize("https://example.com/../../a")).isEqualTo("https://www.example.com/a");
+    }
+
+    @Test
+    void fragmentAndTrailingSlashAreDropped() {
+        assertThat(normalizer.normalize("https://example.com/a/#top")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://example.com/#top")).isEqualTo("https://www.example.com/");
+        assertThat(normalizer.normalize("https://example.com")).isEqualTo("https://www.example.com/");
+    }
+
+    @Test
+    void trackingParamsAreStrippedAndRestSorted() {
+        assertThat(normalizer.normalize("https://example.com/a?utm_source=x&b=2&UTM_Medium=y&a=1&fbclid=z"))
+                .isEqualTo("https://www.example.com/a?a=1&b=2");
+        assertThat(normalizer.normalize("https://example.com/a?utm_source=x")).isEqualTo("https://www.example.com/a");
+        assertThat(normalizer.normalize("https://example.com/a?&&b=1&")).isEqualTo("https://www.example.com/a?b=1");
+    }
+
+    @Test
+    void sortingAndSlashStrippingCanBeDisabled() {
+        IndexingSettings settings = new IndexingSettings();
+        settings.setSortQueryParams(false);
+        settings.setStripTrailingSlash(false);
+        settings.setStripQueryParams(List.of("ref"));
+        UrlNormalizer keeping = new UrlNormalizer("https://example.com", settings);
+
+        assertThat(keeping.normalize("https://example.com/a/?b=2&ref=x&a=1")).isEqualTo("https://example.com/a/?b=2&a=1");
+        assertThat(keeping.normalize("https://www.example.com/a?utm_source=x")).isEqualTo("https://example.com/a?utm_source=x");
+    }
+
+    @Test
+    void unencodedLinksAreParsed() {
+        assertThat(normalizer.normalize("https://example.com/a b")).isEqualTo("https://www.example.com/a%20b");
+    }
+}
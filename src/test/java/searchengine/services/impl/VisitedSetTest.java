@@ -0,0 +1,27 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+import searchengine.dto.crawler.FrontierEntry;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VisitedSetTest {
+
+    @Test
+    void urlRestoredByFingerprintIsSeen() {
+        // обработанные URL прерванного обхода восстанавливаются только по отпечатку из frontier_url
+        for (VisitedSet visited : List.of(new ExactVisitedSet(), new FingerprintVisitedSet(16),
+                new BloomVisitedSet(1_000, 0.01))) {
+            for (int i = 0; i < 100; i++) {
+                assertThat(visited.addFingerprint(FrontierEntry.fingerprint("https://example.com/done/" + i))).isTrue();
+            }
+
+            assertThat(visited.add("https://example.com/done/7")).as(visited.getClass().getSimpleName()).isFalse();
+            assertThat(visited.add("https://example.com/new")).isTrue();
+            assertThat(visited.add("https://example.com/new")).isFalse();
+            assertThat(visited.size()).isEqualTo(101);
+        }
+    }
+}
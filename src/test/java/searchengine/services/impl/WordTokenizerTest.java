@@ -0,0 +1,102 @@
+package searchengine.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordTokenizerTest {
+    private static final String ALPHABET = "abzAZабяАЯёЁ 09.,-\n\t<<>>/=\"";
+
+    @Test
+    void skipsTagsAndLowercases() throws IOException {
+        String html = "<p class=\"x\">Привет, World</p><br>ёЛКА<>x a<b";
+
+        assertThat(tokens(html)).containsExactly("привет", "world", "ёлка", "x", "a", "b");
+        assertThat(readerTokens(html)).isEqualTo(tokens(html));
+    }
+
+    @Test
+    void marksCyrillicWords() {
+        List<Boolean> flags = new ArrayList<>();
+        WordTokenizer.tokenize("дом house домhouse", (buf, length, cyrillic) -> flags.add(cyrillic));
+
+        assertThat(flags).containsExactly(true, false, false);
+    }
+
+    @Test
+    void matchesRegexImplementation() throws IOException {
+        Random random = new Random(7);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(200);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String html = text.toString();
+
+            List<String> expected = regexTokens(html);
+            assertThat(tokens(html)).as(html).isEqualTo(expected);
+            assertThat(readerTokens(html)).as(html).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void tagsSpanningReadChunksAreSkipped() throws IOException {
+        String html = "a".repeat(8190) + " <div\nclass=\"x\"> слово";
+
+        assertThat(readerTokens(html)).isEqualTo(regexTokens(html)).endsWith("слово");
+    }
+
+    @Test
+    void overlongUnclosedTagBecomesText() throws IOException {
+        // '>' только через мегабайт: тегом это не считается, слова внутри не теряются и не копятся в буфере
+        String html = "начало <" + "слово ".repeat(200_000) + "> конец";
+
+        List<String> tokens = readerTokens(html);
+
+        assertThat(tokens).hasSize(200_002);
+        assertThat(tokens.get(1)).isEqualTo("слово");
+        assertThat(tokens.get(tokens.size() - 1)).isEqualTo("конец");
+        assertThat(tokens(html)).isEqualTo(tokens);
+    }
+
+    @Test
+    void tagUpToLimitIsSkipped() throws IOException {
+        String html = "a <" + "x".repeat(WordTokenizer.MAX_TAG_LENGTH) + "> b";
+
+        assertThat(readerTokens(html)).containsExactly("a", "b");
+    }
+
+    private static List<String> regexTokens(String html) {
+        String cleaned = html.replaceAll("<[^>]+>", " ").toLowerCase(Locale.ROOT);
+        return Arrays.stream(cleaned.split("[^a-zа-яё]+")).filter(token -> !token.isBlank()).toList();
+    }
+
+    private static List<String> tokens(String html) {
+        List<String> tokens = new ArrayList<>();
+        WordTokenizer.tokenize(html, (buf, length, cyrillic) -> tokens.add(new String(buf, 0, length)));
+        return tokens;
+    }
+
+    private static List<String> readerTokens(String html) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        // Reader отдаёт текст мелкими порциями, чтобы теги и слова рвались на стыках
+        Reader reader = new StringReader(html) {
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                return super.read(buf, off, Math.min(len, 7));
+            }
+        };
+        WordTokenizer.tokenize(reader, (buf, length, cyrillic) -> tokens.add(new String(buf, 0, length)));
+        return tokens;
+    }
+}